@@ -1,27 +1,33 @@
 package com.jaoow.blockstop;
 
 import com.jaoow.blockstop.commands.BlocksTopCommand;
+import com.jaoow.blockstop.dao.StorageMode;
 import com.jaoow.blockstop.dao.UserDao;
-import com.jaoow.blockstop.inventory.AllInv;
-import com.jaoow.blockstop.inventory.CategoriesInv;
-import com.jaoow.blockstop.inventory.OreInv;
+import com.jaoow.blockstop.dao.UserWriteBehind;
+import com.jaoow.blockstop.inventory.HeadCache;
+import com.jaoow.blockstop.inventory.LeaderboardPages;
+import com.jaoow.blockstop.listener.UserListener;
+import com.jaoow.blockstop.manager.CategoryRegistry;
+import com.jaoow.blockstop.manager.LeaderboardSnapshots;
 import com.jaoow.blockstop.manager.MineUserManager;
-import com.jaoow.blockstop.model.MineUser;
+import com.jaoow.blockstop.manager.MojangTextureLookup;
+import com.jaoow.blockstop.manager.NameCache;
+import com.jaoow.blockstop.manager.SessionProfileSource;
+import com.jaoow.blockstop.manager.SkullCache;
+import com.jaoow.blockstop.manager.StubTextureLookup;
+import com.jaoow.blockstop.manager.TextureLookup;
+import com.jaoow.blockstop.manager.UserEvictor;
+import com.jaoow.blockstop.manager.WindowLeaderboards;
 import com.jaoow.blockstop.utils.inventory.InventoryBuilder;
 import com.jaoow.sql.connector.SQLConnector;
 import com.jaoow.sql.connector.type.impl.MySQLDatabaseType;
 import com.jaoow.sql.connector.type.impl.SQLiteDatabaseType;
-import com.jaoow.sql.executor.SQLExecutor;
 import lombok.Getter;
 import org.bukkit.command.Command;
 import org.bukkit.command.CommandExecutor;
 import org.bukkit.command.CommandSender;
 import org.bukkit.configuration.ConfigurationSection;
 import org.bukkit.entity.Player;
-import org.bukkit.event.EventHandler;
-import org.bukkit.event.EventPriority;
-import org.bukkit.event.Listener;
-import org.bukkit.event.block.BlockBreakEvent;
 import org.bukkit.plugin.java.JavaPlugin;
 import org.jetbrains.annotations.NotNull;
 
@@ -36,7 +42,16 @@ public final class BlocksTop extends JavaPlugin {
 
     private SQLConnector sqlConnector;
     private UserDao userDao;
+    private UserWriteBehind writeBehind;
+    private WindowLeaderboards windows;
     private MineUserManager userManager;
+    private UserEvictor userEvictor;
+    private LeaderboardSnapshots snapshots;
+    private CategoryRegistry categoryRegistry;
+    private HeadCache headCache;
+    private NameCache nameCache;
+    private SkullCache skullCache;
+    private LeaderboardPages leaderboardPages;
 
     @Override
     public void onEnable() {
@@ -44,39 +59,122 @@ public final class BlocksTop extends JavaPlugin {
         instance = this;
         saveDefaultConfig();
 
+        // Compile block categories before any user is created.
+        categoryRegistry = new CategoryRegistry();
+        categoryRegistry.load(getConfig().getConfigurationSection("categories"));
+
         // Init MySQL.
         getLogger().info("Initializing database...");
         try {
             sqlConnector = configureSqlProvider(this.getConfig().getConfigurationSection("connection"));
-            userDao = new UserDao(new SQLExecutor(sqlConnector));
-            userManager = new MineUserManager(userDao);
+            int batchSize = getConfig().getInt("persistence.batch-size", 200);
+            userDao = new UserDao(sqlConnector,
+                    getConfig().getBoolean("connection.mysql.enable"),
+                    StorageMode.fromName(getConfig().getString("persistence.storage")),
+                    batchSize,
+                    getConfig().getInt("persistence.fetch-size", 500),
+                    categoryRegistry.getCategoryArray());
+            writeBehind = new UserWriteBehind(this, userDao, batchSize);
+            windows = new WindowLeaderboards(this, userDao, categoryRegistry.getCategoryArray(),
+                    getConfig().getBoolean("time-windows.enable", true));
+            userManager = new MineUserManager(this, userDao, writeBehind, windows, categoryRegistry,
+                    getConfig().getBoolean("persistence.lazy-load"));
+
+            // Categories ranked with bounded memory instead of exactly.
+            int capacity = getConfig().getInt("approximate.capacity", 1000);
+            for (String id : getConfig().getStringList("approximate.categories")) {
+                categoryRegistry.getCategory(id).ifPresent(category -> userManager.getIndex().approximate(category, capacity));
+            }
+
+            nameCache = new NameCache(this, userDao, getConfig().getString("names.placeholder", "...").replace("&", "§"));
 
             // Create table.
             userDao.createTable();
 
-            // Load all signs.
-            for (MineUser mineUser : userDao.selectAll()) {
-                userManager.loadUser(mineUser);
-            }
+            // Load users in background, or only their totals when lazy loading.
+            int loadThreads = getConfig().getInt("persistence.load-threads", 0);
+            userManager.loadAllAsync(loadThreads > 0 ? loadThreads : Runtime.getRuntime().availableProcessors())
+                    .whenComplete((ignored, throwable) -> {
+                        if (throwable != null) {
+                            getLogger().warning("Failed to load users. Shutting down.");
+                            getServer().getPluginManager().disablePlugin(this);
+                        }
+                    });
         } catch (Exception e) {
             this.getLogger().warning("Failed to connect to database. Shutting down.");
             return;
         }
 
+        // The stub gives every head the same skin, to run without the session service.
+        TextureLookup textures = getConfig().getString("skulls.source", "mojang").equalsIgnoreCase("stub")
+                ? new StubTextureLookup(getConfig().getString("skulls.stub-texture", ""))
+                : new MojangTextureLookup();
+        skullCache = new SkullCache(this, new SessionProfileSource(textures), getConfig().getInt("skulls.size", 1000));
+
         getServer().getPluginManager().registerEvents(new InventoryBuilder.Listener(), this);
-        getServer().getPluginManager().registerEvents(new Listener() {
+        getServer().getPluginManager().registerEvents(new UserListener(userManager, nameCache, skullCache), this);
 
-            @EventHandler(priority = EventPriority.MONITOR)
-            public void onBlock(BlockBreakEvent event) {
-                if (event.isCancelled()) return;
-                userManager.getOrCreate(event.getPlayer().getUniqueId()).addMaterial(event.getBlock().getType());
-            }
+        // Players already online when the plugin was enabled.
+        for (Player player : getServer().getOnlinePlayers()) {
+            userManager.handleJoin(player.getUniqueId());
+            nameCache.handleJoin(player.getUniqueId(), player.getName());
+            skullCache.request(player.getUniqueId(), player.getName());
+        }
 
-        }, this);
+        writeBehind.start(getConfig().getLong("persistence.flush-interval", 30));
+        userManager.start();
+        windows.start(getConfig().getLong("persistence.flush-interval", 30));
+
+        // Lazy loading keeps only online players, evicting right after they leave.
+        userEvictor = new UserEvictor(this, userManager, writeBehind,
+                getConfig().getBoolean("persistence.lazy-load") ? 0 : getConfig().getLong("eviction.idle-time", 600),
+                getConfig().getInt("eviction.max-resident", 0));
+        userEvictor.start(getConfig().getLong("eviction.check-interval", 30));
+
+        snapshots = new LeaderboardSnapshots(this, userManager, categoryRegistry,
+                getConfig().getInt("snapshots.size", 42));
+        snapshots.start(getConfig().getLong("snapshots.interval", 5));
+
+        headCache = new HeadCache(getConfig().getInt("head-cache.size", 500));
+
+        leaderboardPages = new LeaderboardPages(this);
+        leaderboardPages.start(getConfig().getLong("menus.refresh-ticks", 20));
+
+        userManager.getMaterialBoards().start(getConfig().getLong("material-boards.idle-time", 600),
+                getConfig().getLong("material-boards.check-interval", 60));
 
         getCommand("blockstop").setExecutor(new BlocksTopCommand());
     }
 
+    @Override
+    public void onDisable() {
+        if (userEvictor != null) {
+            userEvictor.stop();
+        }
+
+        if (snapshots != null) {
+            snapshots.stop();
+        }
+
+        if (leaderboardPages != null) {
+            leaderboardPages.stop();
+        }
+
+        if (userManager != null) {
+            userManager.stop();
+            userManager.getMaterialBoards().stop();
+        }
+
+        if (writeBehind != null) {
+            getLogger().info("Saving users...");
+            writeBehind.shutdown();
+        }
+
+        if (windows != null) {
+            windows.shutdown();
+        }
+    }
+
 
     private @NotNull SQLConnector configureSqlProvider(@NotNull ConfigurationSection section) throws SQLException {
 
@@ -1,29 +1,71 @@
 package com.jaoow.blockstop.commands;
 
-import com.google.common.collect.Lists;
-import com.jaoow.blockstop.inventory.AllInv;
+import com.jaoow.blockstop.BlocksTop;
 import com.jaoow.blockstop.inventory.CategoriesInv;
-import com.jaoow.blockstop.inventory.OreInv;
+import com.jaoow.blockstop.inventory.LeaderboardInv;
+import com.jaoow.blockstop.manager.MaterialLeaderboards;
+import com.jaoow.blockstop.manager.MineUserManager;
+import com.jaoow.blockstop.manager.WindowLeaderboards;
+import com.jaoow.blockstop.model.BlockCategory;
+import com.jaoow.blockstop.model.TimeWindow;
+import com.jaoow.blockstop.utils.Utils;
+import com.jaoow.blockstop.utils.inventory.InventoryBuilder;
+import org.bukkit.Bukkit;
+import org.bukkit.ChatColor;
+import org.bukkit.Material;
 import org.bukkit.command.Command;
 import org.bukkit.command.CommandExecutor;
 import org.bukkit.command.CommandSender;
 import org.bukkit.command.TabCompleter;
 import org.bukkit.entity.Player;
 
+import java.text.DecimalFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
 
 public class BlocksTopCommand implements CommandExecutor, TabCompleter {
 
+    private static final String STATUS_PERMISSION = "blockstop.admin";
+
+    // Last time each player started building a material board, only touched on the main thread.
+    private final Map<UUID, Long> lastBuilds = new HashMap<>();
+
     @Override
     public boolean onCommand(CommandSender sender, Command command, String label, String[] args) {
+        if (args.length == 1 && args[0].equalsIgnoreCase("status") && sender.hasPermission(STATUS_PERMISSION)) {
+            sendStatus(sender);
+            return false;
+        }
+
+        if (BlocksTop.getInstance().getUserManager().isWarming()) {
+            sendMessage(sender, "loading");
+            return false;
+        }
+
+        if (args.length >= 1 && args.length <= 4 && args[0].equalsIgnoreCase("rank")) {
+            sendRank(sender, args);
+            return false;
+        }
+
+        if (args.length == 2 && args[0].equalsIgnoreCase("material") && sender instanceof Player) {
+            openMaterial((Player) sender, args[1]);
+            return false;
+        }
+
         if (sender instanceof Player) {
-            if (args.length == 1) {
-                if (args[0].equalsIgnoreCase("all")) {
-                    new AllInv().open((Player) sender);
-                    return false;
-                } else if (args[0].equalsIgnoreCase("ores")) {
-                    new OreInv().open((Player) sender);
+            if (args.length == 1 || args.length == 2) {
+                Optional<BlockCategory> category = BlocksTop.getInstance().getCategoryRegistry().getCategory(args[0]);
+                if (category.isPresent()) {
+                    new LeaderboardInv(category.get(), args.length == 2 ? parseWindow(args[1]) : null).open((Player) sender);
                     return false;
                 }
             }
@@ -32,8 +74,221 @@ public class BlocksTopCommand implements CommandExecutor, TabCompleter {
         return false;
     }
 
+    /**
+     * Handle {@code /blockstop rank [player] [category] [window]}, defaulting
+     * to the sender, the category with every block and the lifetime totals.
+     */
+    @SuppressWarnings("deprecation")
+    private void sendRank(CommandSender sender, String[] args) {
+        BlocksTop plugin = BlocksTop.getInstance();
+
+        if (args.length < 2) {
+            if (sender instanceof Player) {
+                sendRank(sender, ((Player) sender).getUniqueId(), args);
+            } else {
+                sendMessage(sender, "rank-usage");
+            }
+            return;
+        }
+
+        // Known names are found in the cache, only the others are looked up by the server.
+        Player player = Bukkit.getPlayerExact(args[1]);
+        Optional<UUID> known = player != null ? Optional.of(player.getUniqueId()) : plugin.getNameCache().findUniqueId(args[1]);
+        if (known.isPresent()) {
+            sendRank(sender, known.get(), args);
+            return;
+        }
+
+        // May read the player data or ask Mojang, never done on the main thread.
+        Bukkit.getScheduler().runTaskAsynchronously(plugin, () -> {
+            UUID uuid = Bukkit.getOfflinePlayer(args[1]).getUniqueId();
+
+            Bukkit.getScheduler().runTask(plugin, () -> {
+                if (sender instanceof Player && !((Player) sender).isOnline()) return;
+                sendRank(sender, uuid, args);
+            });
+        });
+    }
+
+    private void sendRank(CommandSender sender, UUID uuid, String[] args) {
+        BlocksTop plugin = BlocksTop.getInstance();
+
+        Optional<BlockCategory> category = args.length >= 3
+                ? plugin.getCategoryRegistry().getCategory(args[2])
+                : Optional.of(plugin.getCategoryRegistry().getAll());
+        if (!category.isPresent()) {
+            sendMessage(sender, "unknown-category", "%category%", args[2]);
+            return;
+        }
+
+        TimeWindow window = args.length == 4 ? parseWindow(args[3]) : null;
+        String categoryName = window == null
+                ? category.get().getId()
+                : category.get().getId() + " (" + LeaderboardInv.windowName(window) + ")";
+
+        MineUserManager userManager = plugin.getUserManager();
+        WindowLeaderboards windows = userManager.getWindows();
+        String name = plugin.getNameCache().getIfPresent(uuid);
+        if (name == null) name = args.length >= 2 ? args[1] : sender.getName();
+
+        int rank = window == null ? userManager.getRank(uuid, category.get()) : windows.getRank(uuid, window, category.get());
+        if (rank < 0) {
+            sendMessage(sender, "unranked", "%name%", name, "%category%", categoryName);
+            return;
+        }
+
+        long score = window == null
+                ? userManager.getIndex().getScore(uuid, category.get())
+                : windows.getScore(uuid, window, category.get());
+        int total = window == null
+                ? userManager.getIndex().getRankedCount(category.get())
+                : windows.getRankedCount(window, category.get());
+        boolean approximate = window == null && userManager.getIndex().isApproximate(category.get());
+
+        // Approximate scores are estimates, shown with how much they may exceed the real one.
+        DecimalFormat format = new DecimalFormat("#,##0");
+        String value = approximate
+                ? "~" + format.format(score) + " (±" + format.format(userManager.getIndex().getError(uuid, category.get())) + ")"
+                : format.format(score);
+
+        sendMessage(sender, "rank",
+                "%name%", name,
+                "%category%", categoryName,
+                "%position%", (approximate ? "~" : "") + rank,
+                "%total%", String.valueOf(total),
+                "%value%", value);
+    }
+
+    /**
+     * Open the board of the material, once built when requested for the first time.
+     * Building reads every stored user, so players without the admin permission
+     * may only start one build per cooldown.
+     */
+    private void openMaterial(Player player, String name) {
+        Material material = Material.matchMaterial(name);
+        if (material == null || !material.isBlock() || material.name().startsWith("LEGACY_")) {
+            sendMessage(player, "unknown-material", "%material%", name);
+            return;
+        }
+
+        MaterialLeaderboards boards = BlocksTop.getInstance().getUserManager().getMaterialBoards();
+        if (!boards.isRequested(material) && !player.hasPermission(STATUS_PERMISSION)) {
+            long cooldown = TimeUnit.SECONDS.toMillis(BlocksTop.getInstance().getConfig().getLong("material-boards.build-cooldown", 30));
+            long now = System.currentTimeMillis();
+
+            lastBuilds.values().removeIf(time -> now - time >= cooldown);
+            Long last = lastBuilds.get(player.getUniqueId());
+            if (last != null) {
+                long seconds = TimeUnit.MILLISECONDS.toSeconds(cooldown - (now - last)) + 1;
+                sendMessage(player, "material-cooldown", "%seconds%", String.valueOf(seconds));
+                return;
+            }
+            lastBuilds.put(player.getUniqueId(), now);
+        }
+
+        CompletableFuture<Void> ready = boards.request(material);
+        if (!ready.isDone()) {
+            sendMessage(player, "material-building", "%material%", Utils.formatMaterial(material));
+        }
+
+        // Boards are completed on the main thread, failed ones in background.
+        ready.whenComplete((ignored, error) -> {
+            if (error == null) {
+                if (player.isOnline()) new LeaderboardInv(material).open(player);
+                return;
+            }
+
+            Bukkit.getScheduler().runTask(BlocksTop.getInstance(), () -> {
+                if (player.isOnline()) sendMessage(player, "material-failed", "%material%", Utils.formatMaterial(material));
+            });
+        });
+    }
+
+    /**
+     * Parse the window, unknown names and disabled windows falling back to the lifetime totals.
+     */
+    private TimeWindow parseWindow(String name) {
+        if (!BlocksTop.getInstance().getUserManager().getWindows().isEnabled()) return null;
+        return TimeWindow.fromName(name).orElse(null);
+    }
+
+    private void sendStatus(CommandSender sender) {
+        BlocksTop plugin = BlocksTop.getInstance();
+
+        sender.sendMessage("§eBlocksTop status:");
+        sender.sendMessage("§7State: §f" + (plugin.getUserManager().isWarming() ? "warming" : "ready"));
+        sender.sendMessage("§7Resident users: §f" + plugin.getUserManager().getResidentCount());
+        sender.sendMessage("§7Indexed users: §f" + plugin.getUserManager().getIndex().size());
+        sender.sendMessage("§7Evicted users: §f" + plugin.getUserEvictor().getEvictionCount());
+        sender.sendMessage("§7Material boards: §f" + plugin.getUserManager().getMaterialBoards().size());
+        sender.sendMessage("§7Snapshot age: §f" + plugin.getSnapshots().getAgeMillis() + "ms");
+        sender.sendMessage("§7Known names: §f" + plugin.getNameCache().size());
+        sender.sendMessage("§7Skulls: §f" + plugin.getSkullCache().size());
+        sender.sendMessage("§7Head cache: §f" + plugin.getHeadCache().size() + " heads, "
+                + plugin.getHeadCache().getHits() + " hits, " + plugin.getHeadCache().getMisses() + " misses");
+        for (BlockCategory category : plugin.getCategoryRegistry().getCategories()) {
+            if (!plugin.getUserManager().getIndex().isApproximate(category)) continue;
+            sender.sendMessage("§7Approximate " + category.getId() + ": §f±" + plugin.getUserManager().getIndex().getErrorBound(category));
+        }
+        sender.sendMessage("§7Open menus: §f" + InventoryBuilder.getOpenInventories().size());
+        sender.sendMessage("§7Menu slots written: §f" + InventoryBuilder.getTotalWrites());
+        sender.sendMessage("§7Last flush: §f" + plugin.getWriteBehind().getLastFlushCount()
+                + " users in " + plugin.getWriteBehind().getLastFlushMillis() + "ms");
+    }
+
+    private void sendMessage(CommandSender sender, String key, String... replacements) {
+        String message = BlocksTop.getInstance().getConfig().getString("messages." + key, "");
+        for (int i = 0; i + 1 < replacements.length; i += 2) {
+            message = message.replace(replacements[i], replacements[i + 1]);
+        }
+        sender.sendMessage(ChatColor.translateAlternateColorCodes('&', message));
+    }
+
     @Override
     public List<String> onTabComplete(CommandSender sender, Command command, String alias, String[] args) {
-        return args.length == 1 ? Lists.newArrayList("all", "ores") : Collections.emptyList();
+        List<String> options;
+
+        if (args.length == 1) {
+            options = categoryIds();
+            options.add("rank");
+            options.add("material");
+            if (sender.hasPermission(STATUS_PERMISSION)) options.add("status");
+        } else if (args.length == 2 && args[0].equalsIgnoreCase("rank")) {
+            options = Bukkit.getOnlinePlayers().stream()
+                    .map(Player::getName)
+                    .collect(Collectors.toList());
+        } else if (args.length == 3 && args[0].equalsIgnoreCase("rank")) {
+            options = categoryIds();
+        } else if (args.length == 4 && args[0].equalsIgnoreCase("rank")) {
+            options = windowIds();
+        } else if (args.length == 2 && args[0].equalsIgnoreCase("material")) {
+            options = Arrays.stream(Material.values())
+                    .filter(material -> material.isBlock() && !material.name().startsWith("LEGACY_"))
+                    .map(Material::name)
+                    .collect(Collectors.toList());
+        } else if (args.length == 2 && BlocksTop.getInstance().getCategoryRegistry().getCategory(args[0]).isPresent()) {
+            options = windowIds();
+        } else {
+            return Collections.emptyList();
+        }
+
+        String prefix = args[args.length - 1].toLowerCase();
+        return options.stream()
+                .filter(option -> option.toLowerCase().startsWith(prefix))
+                .collect(Collectors.toList());
+    }
+
+    private List<String> windowIds() {
+        if (!BlocksTop.getInstance().getUserManager().getWindows().isEnabled()) return new ArrayList<>();
+
+        return Arrays.stream(TimeWindow.values())
+                .map(TimeWindow::getId)
+                .collect(Collectors.toList());
+    }
+
+    private List<String> categoryIds() {
+        return BlocksTop.getInstance().getCategoryRegistry().getCategories().stream()
+                .map(BlockCategory::getId)
+                .collect(Collectors.toList());
     }
 }
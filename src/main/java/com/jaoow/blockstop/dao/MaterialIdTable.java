@@ -0,0 +1,116 @@
+package com.jaoow.blockstop.dao;
+
+import org.bukkit.Material;
+import org.jetbrains.annotations.Nullable;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Arrays;
+import java.util.Collection;
+
+/**
+ * Stable mapping between material names and small integer ids, stored in the database.
+ * <p>
+ * Ordinals change between server versions, so binary payloads reference these
+ * ids instead. Ids are never reused, names unknown to the running version keep
+ * their id so payloads written by other versions stay readable.
+ */
+public class MaterialIdTable {
+
+    public static final String TABLE = "mine_materials";
+
+    private static final int MAX_ATTEMPTS = 5;
+
+    private final int[] idByOrdinal = new int[Material.values().length];
+    // Read without locking by the decoders, replaced as a whole when growing.
+    private volatile Material[] materialById = new Material[0];
+    private int nextId = 0;
+
+    public MaterialIdTable() {
+        Arrays.fill(idByOrdinal, -1);
+    }
+
+    public void createTable(Connection connection) throws SQLException {
+        try (Statement statement = connection.createStatement()) {
+            statement.executeUpdate("CREATE TABLE IF NOT EXISTS " + TABLE + "(" +
+                    "id INT NOT NULL PRIMARY KEY," +
+                    "name VARCHAR(64) NOT NULL UNIQUE" +
+                    ");");
+        }
+    }
+
+    public synchronized void load(Connection connection) throws SQLException {
+        try (Statement statement = connection.createStatement();
+             ResultSet resultSet = statement.executeQuery("SELECT id, name FROM " + TABLE)) {
+
+            while (resultSet.next()) {
+                put(resultSet.getInt("id"), resultSet.getString("name"));
+            }
+        }
+    }
+
+    /**
+     * Get the id of the material.
+     *
+     * @param material the material
+     * @return the id, or -1 if the material was never registered
+     */
+    public int idOf(Material material) {
+        return idByOrdinal[material.ordinal()];
+    }
+
+    @Nullable
+    public Material materialOf(int id) {
+        Material[] materials = materialById;
+        return id >= 0 && id < materials.length ? materials[id] : null;
+    }
+
+    /**
+     * Register the materials without id, committing them before any payload uses them.
+     * Ids are only used once stored, another server sharing the table may take an id
+     * or register a material first, the table is then read again and the insert retried.
+     *
+     * @param connection the connection
+     * @param materials  the materials
+     */
+    public synchronized void register(Connection connection, Collection<Material> materials) throws SQLException {
+        for (Material material : materials) {
+            for (int attempt = 0; idOf(material) < 0; attempt++) {
+                int id = nextId;
+
+                try (PreparedStatement statement = connection.prepareStatement("INSERT INTO " + TABLE + " (id, name) VALUES(?,?)")) {
+                    statement.setInt(1, id);
+                    statement.setString(2, material.name());
+                    statement.executeUpdate();
+                    if (!connection.getAutoCommit()) connection.commit();
+                } catch (SQLException e) {
+                    if (!connection.getAutoCommit()) connection.rollback();
+                    if (attempt >= MAX_ATTEMPTS) throw e;
+
+                    // The id or the name was taken meanwhile, pick up what is stored.
+                    load(connection);
+                    continue;
+                }
+
+                put(id, material.name());
+            }
+        }
+    }
+
+    private void put(int id, String name) {
+        nextId = Math.max(nextId, id + 1);
+
+        Material material = Material.getMaterial(name);
+        if (material == null) return;
+
+        if (id >= materialById.length) {
+            materialById = Arrays.copyOf(materialById, Math.max(id + 1, materialById.length * 2));
+        }
+
+        materialById[id] = material;
+        idByOrdinal[material.ordinal()] = id;
+    }
+}
@@ -0,0 +1,34 @@
+package com.jaoow.blockstop.dao;
+
+import java.util.Locale;
+
+/**
+ * The layout used by {@link UserDao} to store users.
+ */
+public enum StorageMode {
+
+    /**
+     * One row per user holding the whole material map as JSON.
+     */
+    JSON,
+
+    /**
+     * One row per user holding a compact binary payload, see {@link com.jaoow.blockstop.dao.adapter.MineUserCodec}.
+     */
+    BINARY,
+
+    /**
+     * One row per user and material, saves only send the deltas.
+     */
+    NORMALIZED;
+
+    public static StorageMode fromName(String name) {
+        if (name == null) return JSON;
+
+        try {
+            return valueOf(name.trim().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            return JSON;
+        }
+    }
+}
@@ -1,55 +1,764 @@
 package com.jaoow.blockstop.dao;
 
 import com.jaoow.blockstop.dao.adapter.MineUserAdapter;
+import com.jaoow.blockstop.dao.adapter.MineUserCodec;
+import com.jaoow.blockstop.model.BlockCategory;
+import com.jaoow.blockstop.model.MaterialCounter;
 import com.jaoow.blockstop.model.MineUser;
+import com.jaoow.blockstop.model.WindowCounter;
+import com.jaoow.sql.connector.SQLConnector;
 import com.jaoow.sql.executor.SQLExecutor;
+import lombok.Getter;
+import org.bukkit.Material;
+import org.jetbrains.annotations.Nullable;
 
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.Map;
 import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
 
 public class UserDao {
 
     private static final String TABLE = "mine_users";
+    private static final String MATERIALS_TABLE = "mine_user_materials";
+    private static final String TOTALS_TABLE = "mine_user_totals";
+    private static final String BUCKETS_TABLE = "mine_user_buckets";
+    private static final String NAMES_TABLE = "mine_user_names";
+
+    private static final int DECODE_QUEUE_FACTOR = 64;
+
+    private static final String JSON_REPLACE_QUERY = "REPLACE INTO " + TABLE + " (id, data, payload) VALUES(?,?,NULL)";
+    private static final String BINARY_REPLACE_QUERY = "REPLACE INTO " + TABLE + " (id, data, payload) VALUES(?,NULL,?)";
+
+    private static final String TOTALS_REPLACE_QUERY = "REPLACE INTO " + TOTALS_TABLE + " (user_id, category, amount) VALUES(?,?,?)";
+    private static final String BUCKETS_REPLACE_QUERY = "REPLACE INTO " + BUCKETS_TABLE + " (user_id, epoch_day, category, amount) VALUES(?,?,?,?)";
+    private static final String NAMES_REPLACE_QUERY = "REPLACE INTO " + NAMES_TABLE + " (user_id, name) VALUES(?,?)";
+
+    private static final String MYSQL_UPSERT_QUERY = "INSERT INTO " + MATERIALS_TABLE + " (user_id, material, amount) VALUES(?,?,?) " +
+            "ON DUPLICATE KEY UPDATE amount = amount + ?";
+    private static final String SQLITE_UPSERT_QUERY = "INSERT INTO " + MATERIALS_TABLE + " (user_id, material, amount) VALUES(?,?,?) " +
+            "ON CONFLICT(user_id, material) DO UPDATE SET amount = amount + ?";
+
+    private final SQLConnector sqlConnector;
     private final SQLExecutor sqlExecutor;
 
-    public UserDao(SQLExecutor sqlExecutor) {
-        this.sqlExecutor = sqlExecutor;
+    @Getter
+    private final StorageMode storageMode;
+    private final boolean mysql;
+    private final int batchSize;
+    private final int fetchSize;
+
+    private final BlockCategory[] categories;
+    private final MineUserAdapter adapter;
+
+    private final MaterialIdTable idTable = new MaterialIdTable();
+    private final MineUserCodec codec = new MineUserCodec(idTable);
+
+    /**
+     * @param sqlConnector the connector
+     * @param mysql        if the connector is MySQL, SQLite otherwise
+     * @param storageMode  the storage layout
+     * @param batchSize    the amount of rows sent per JDBC batch
+     * @param fetchSize    the amount of rows fetched per round trip when streaming, ignored by MySQL
+     * @param categories   the categories of the users read, ordered by index
+     */
+    public UserDao(SQLConnector sqlConnector, boolean mysql, StorageMode storageMode, int batchSize, int fetchSize,
+                   BlockCategory[] categories) {
+        this.sqlConnector = sqlConnector;
+        this.categories = categories;
+        this.adapter = new MineUserAdapter(categories);
+        this.sqlExecutor = new SQLExecutor(sqlConnector);
+        this.storageMode = storageMode;
+        this.mysql = mysql;
+        this.batchSize = Math.max(1, batchSize);
+        this.fetchSize = Math.max(1, fetchSize);
     }
 
     public void createTable() {
         sqlExecutor.updateQuery("CREATE TABLE IF NOT EXISTS " + TABLE + "(" +
                 "id VARCHAR(64) NOT NULL PRIMARY KEY UNIQUE," +
-                "data TEXT" +
+                "data TEXT," +
+                "payload BLOB" +
+                ");");
+
+        if (storageMode == StorageMode.NORMALIZED) {
+            sqlExecutor.updateQuery("CREATE TABLE IF NOT EXISTS " + MATERIALS_TABLE + "(" +
+                    "user_id VARCHAR(64) NOT NULL," +
+                    "material VARCHAR(64) NOT NULL," +
+                    "amount BIGINT NOT NULL DEFAULT 0," +
+                    "PRIMARY KEY (user_id, material)" +
+                    ");");
+        }
+
+        sqlExecutor.updateQuery("CREATE TABLE IF NOT EXISTS " + TOTALS_TABLE + "(" +
+                "user_id VARCHAR(64) NOT NULL," +
+                "category VARCHAR(64) NOT NULL," +
+                "amount BIGINT NOT NULL DEFAULT 0," +
+                "PRIMARY KEY (user_id, category)" +
                 ");");
+
+        sqlExecutor.updateQuery("CREATE TABLE IF NOT EXISTS " + BUCKETS_TABLE + "(" +
+                "user_id VARCHAR(64) NOT NULL," +
+                "epoch_day INT NOT NULL," +
+                "category VARCHAR(64) NOT NULL," +
+                "amount BIGINT NOT NULL DEFAULT 0," +
+                "PRIMARY KEY (user_id, epoch_day, category)" +
+                ");");
+
+        // Apart from the users, which are replaced as a whole on every save.
+        sqlExecutor.updateQuery("CREATE TABLE IF NOT EXISTS " + NAMES_TABLE + "(" +
+                "user_id VARCHAR(64) NOT NULL PRIMARY KEY," +
+                "name VARCHAR(16) NOT NULL" +
+                ");");
+
+        withConnection(connection -> {
+            // Tables created before the binary format lack the payload column.
+            addColumnIfMissing(connection, TABLE, "payload", "BLOB");
+
+            idTable.createTable(connection);
+            idTable.load(connection);
+            return null;
+        });
     }
 
     public MineUser selectOne(UUID uuid) {
-        return sqlExecutor.resultOneQuery(
-                "SELECT * FROM " + TABLE + " WHERE id = ?",
-                statement -> statement.set(1, uuid.toString()),
-                MineUserAdapter.class
-        );
+        if (storageMode == StorageMode.NORMALIZED) {
+            MaterialCounter materials = withConnection(connection -> selectMaterials(connection, uuid));
+            if (materials != null) {
+                return new MineUser(uuid, materials, categories);
+            }
+        }
+
+        return withConnection(connection -> {
+            try (PreparedStatement statement = connection.prepareStatement("SELECT * FROM " + TABLE + " WHERE id = ?")) {
+                statement.setString(1, uuid.toString());
+
+                try (ResultSet resultSet = statement.executeQuery()) {
+                    return resultSet.next() ? readRow(resultSet) : null;
+                }
+            }
+        });
     }
 
     public Set<MineUser> selectAll() {
-        return selectAll("");
+        Set<MineUser> users = new LinkedHashSet<>();
+        forEachUser(users::add);
+        return users;
     }
 
+    /**
+     * Select users from the users table, reading both binary and JSON rows.
+     *
+     * @param preferences the clauses appended to the query
+     * @return the users
+     */
     public Set<MineUser> selectAll(String preferences) {
-        return sqlExecutor.resultManyQuery(
-                "SELECT * FROM " + TABLE + " " + preferences,
-                statement -> {},
-                MineUserAdapter.class
-        );
+        Set<MineUser> users = new LinkedHashSet<>();
+        withConnection(connection -> {
+            streamRows(connection, preferences, users::add, null);
+            return null;
+        });
+        return users;
+    }
+
+    /**
+     * Stream every stored user to the consumer, one at a time. Rows are read
+     * through a forward-only cursor, so the whole table is never held in memory.
+     * <p>
+     * The consumer runs while the cursor is open and must not query the database.
+     *
+     * @param consumer the user consumer
+     */
+    public void forEachUser(Consumer<MineUser> consumer) {
+        forEachUser(consumer, null);
+    }
+
+    /**
+     * Stream every stored user to the consumer. Rows are read by the calling
+     * thread and decoded in parallel by the pool, the consumer is then called
+     * from the pool threads and must be thread-safe. This returns once every
+     * row was consumed.
+     *
+     * @param consumer the user consumer
+     * @param decoder  the pool decoding rows, or null to decode on the calling thread
+     */
+    public void forEachUser(Consumer<MineUser> consumer, @Nullable ForkJoinPool decoder) {
+        withConnection(connection -> {
+            if (storageMode != StorageMode.NORMALIZED) {
+                streamRows(connection, "", consumer, decoder);
+                return null;
+            }
+
+            Set<UUID> normalized = new HashSet<>();
+            streamMaterials(connection, user -> {
+                normalized.add(user.getUniqueId());
+                consumer.accept(user);
+            });
+
+            // Users only present in the users table are written to the new layout on next flush.
+            streamRows(connection, "", user -> {
+                if (!normalized.contains(user.getUniqueId())) consumer.accept(user);
+            }, decoder);
+            return null;
+        });
+    }
+
+    /**
+     * Select the stored amount of a material for every user that broke it.
+     * The normalized layout reads only that material, the others decode every row.
+     *
+     * @param material the material
+     * @return the amounts by user
+     */
+    public Map<UUID, Long> selectMaterialAmounts(Material material) {
+        Map<UUID, Long> amounts = new HashMap<>();
+        Consumer<MineUser> collector = user -> {
+            long amount = user.getAmount(material);
+            if (amount > 0) amounts.put(user.getUniqueId(), amount);
+        };
+
+        if (storageMode != StorageMode.NORMALIZED) {
+            forEachUser(collector);
+            return amounts;
+        }
+
+        return withConnection(connection -> {
+            try (PreparedStatement statement = connection.prepareStatement(
+                    "SELECT user_id, amount FROM " + MATERIALS_TABLE + " WHERE material = ?")) {
+                statement.setString(1, material.name());
+
+                try (ResultSet resultSet = statement.executeQuery()) {
+                    while (resultSet.next()) {
+                        long amount = resultSet.getLong("amount");
+                        if (amount > 0) amounts.put(UUID.fromString(resultSet.getString("user_id")), amount);
+                    }
+                }
+            }
+
+            // Users not migrated to the normalized layout yet.
+            streamRows(connection, "WHERE id NOT IN (SELECT DISTINCT user_id FROM " + MATERIALS_TABLE + ")", collector, null);
+            return amounts;
+        });
+    }
+
+    /**
+     * Select the stored category totals of every user, a projection that
+     * avoids decoding the material data.
+     *
+     * @param categories the categories, ordered by index
+     * @return the totals by user, or null if a category was never stored and they must be rebuilt
+     */
+    public Map<UUID, long[]> selectTotals(BlockCategory[] categories) {
+        Map<String, Integer> indexes = new HashMap<>();
+        for (BlockCategory category : categories) {
+            indexes.put(category.getId(), category.getIndex());
+        }
+
+        return withConnection(connection -> {
+            Map<UUID, long[]> totals = new HashMap<>();
+            Set<String> found = new HashSet<>();
+
+            try (Statement statement = createCursor(connection);
+                 ResultSet resultSet = statement.executeQuery("SELECT user_id, category, amount FROM " + TOTALS_TABLE)) {
+
+                while (resultSet.next()) {
+                    Integer index = indexes.get(resultSet.getString("category"));
+                    if (index == null) continue;
+
+                    found.add(resultSet.getString("category"));
+                    UUID uuid = UUID.fromString(resultSet.getString("user_id"));
+                    totals.computeIfAbsent(uuid, id -> new long[categories.length])[index] = resultSet.getLong("amount");
+                }
+            }
+
+            return found.size() == indexes.size() ? totals : null;
+        });
+    }
+
+    /**
+     * Write the category totals of the users.
+     *
+     * @param users the users
+     */
+    public void saveTotals(Collection<MineUser> users) {
+        if (users.isEmpty()) return;
+        withConnection(connection -> {
+            saveTotals(connection, users);
+            return null;
+        });
+    }
+
+    /**
+     * Select the daily buckets of every user active since the given day.
+     *
+     * @param fromDay    the first epoch day read
+     * @param categories the categories, ordered by index
+     * @return the counters by user
+     */
+    public Map<UUID, WindowCounter> selectBuckets(long fromDay, BlockCategory[] categories) {
+        Map<String, Integer> indexes = new HashMap<>();
+        for (BlockCategory category : categories) {
+            indexes.put(category.getId(), category.getIndex());
+        }
+
+        return withConnection(connection -> {
+            Map<UUID, WindowCounter> counters = new HashMap<>();
+
+            try (PreparedStatement statement = connection.prepareStatement(
+                    "SELECT user_id, epoch_day, category, amount FROM " + BUCKETS_TABLE + " WHERE epoch_day >= ?")) {
+                statement.setLong(1, fromDay);
+
+                try (ResultSet resultSet = statement.executeQuery()) {
+                    while (resultSet.next()) {
+                        Integer index = indexes.get(resultSet.getString("category"));
+                        if (index == null) continue;
+
+                        UUID uuid = UUID.fromString(resultSet.getString("user_id"));
+                        counters.computeIfAbsent(uuid, id -> new WindowCounter(categories.length))
+                                .add(resultSet.getLong("epoch_day"), index, resultSet.getLong("amount"));
+                    }
+                }
+            }
+            return counters;
+        });
+    }
+
+    /**
+     * Write the buckets of the counters that are not expired.
+     *
+     * @param counters   the counters by user
+     * @param today      the current epoch day
+     * @param categories the categories, ordered by index
+     */
+    public void saveBuckets(Map<UUID, WindowCounter> counters, long today, BlockCategory[] categories) {
+        if (counters.isEmpty()) return;
+
+        withConnection(connection -> {
+            boolean autoCommit = connection.getAutoCommit();
+            connection.setAutoCommit(false);
+
+            try (PreparedStatement statement = connection.prepareStatement(BUCKETS_REPLACE_QUERY)) {
+                int[] count = {0};
+                SQLException[] failure = {null};
+
+                for (Map.Entry<UUID, WindowCounter> entry : counters.entrySet()) {
+                    String id = entry.getKey().toString();
+
+                    entry.getValue().forEach(today, (day, category, amount) -> {
+                        if (failure[0] != null) return;
+                        try {
+                            statement.setString(1, id);
+                            statement.setLong(2, day);
+                            statement.setString(3, categories[category].getId());
+                            statement.setLong(4, amount);
+                            statement.addBatch();
+
+                            if (++count[0] % batchSize == 0) {
+                                commitBatch(connection, statement);
+                            }
+                        } catch (SQLException e) {
+                            failure[0] = e;
+                        }
+                    });
+
+                    if (failure[0] != null) throw failure[0];
+                }
+
+                if (count[0] % batchSize != 0) {
+                    commitBatch(connection, statement);
+                }
+            } finally {
+                connection.setAutoCommit(autoCommit);
+            }
+            return null;
+        });
+    }
+
+    /**
+     * Delete the buckets older than the given day.
+     *
+     * @param day the first epoch day kept
+     */
+    public void deleteBucketsBefore(long day) {
+        withConnection(connection -> {
+            try (PreparedStatement statement = connection.prepareStatement(
+                    "DELETE FROM " + BUCKETS_TABLE + " WHERE epoch_day < ?")) {
+                statement.setLong(1, day);
+                statement.executeUpdate();
+            }
+            return null;
+        });
+    }
+
+    /**
+     * Select the last known name of the user.
+     *
+     * @param uuid the user id
+     * @return the name, or null if never stored
+     */
+    @Nullable
+    public String selectName(UUID uuid) {
+        return withConnection(connection -> {
+            try (PreparedStatement statement = connection.prepareStatement(
+                    "SELECT name FROM " + NAMES_TABLE + " WHERE user_id = ?")) {
+                statement.setString(1, uuid.toString());
+
+                try (ResultSet resultSet = statement.executeQuery()) {
+                    return resultSet.next() ? resultSet.getString("name") : null;
+                }
+            }
+        });
+    }
+
+    public void saveName(UUID uuid, String name) {
+        withConnection(connection -> {
+            try (PreparedStatement statement = connection.prepareStatement(NAMES_REPLACE_QUERY)) {
+                statement.setString(1, uuid.toString());
+                statement.setString(2, name);
+                statement.executeUpdate();
+            }
+            return null;
+        });
     }
 
     public void saveOne(MineUser user) {
-        sqlExecutor.updateQuery(
-                String.format("REPLACE INTO %s VALUES(?,?)", TABLE),
-                statement -> {
-                    statement.set(1, user.getUniqueId().toString());
-                    statement.set(2, MineUserAdapter.GSON.toJson(user, MineUser.class));
+        saveAll(Collections.singletonList(user));
+    }
+
+    /**
+     * Save the users reusing a single prepared statement, sending them
+     * in JDBC batches where each batch is committed as one transaction.
+     * <p>
+     * In {@link StorageMode#NORMALIZED} only the blocks counted since the
+     * last save are sent, as increments of the stored amounts. Increments are
+     * not idempotent, so all of them are committed in one transaction and
+     * the deltas are given back to the users when it fails.
+     *
+     * @param users the users to save
+     * @throws IllegalStateException if a batch fails, that batch is rolled back
+     */
+    public void saveAll(Collection<MineUser> users) {
+        if (users.isEmpty()) return;
+
+        Map<MineUser, MaterialCounter> deltas = new HashMap<>(users.size() * 2);
+        for (MineUser user : users) {
+            deltas.put(user, user.drainUnsaved());
+        }
+
+        try {
+            withConnection(connection -> {
+                if (storageMode == StorageMode.NORMALIZED) {
+                    // Users still in the users table have no amounts to increment yet, all of them are sent.
+                    Map<MineUser, MaterialCounter> increments = new HashMap<>(deltas);
+                    for (MineUser user : users) {
+                        if (user.isMigrating()) increments.put(user, user.snapshotMaterials());
+                    }
+                    saveDeltas(connection, increments);
+                } else {
+                    saveRows(connection, users);
+                }
+                return null;
+            });
+        } catch (RuntimeException e) {
+            deltas.forEach(MineUser::restoreUnsaved);
+            throw e;
+        }
+
+        users.forEach(MineUser::clearMigrating);
+
+        // Totals are absolute values, a failure here is safe to retry.
+        saveTotals(users);
+    }
+
+    private MineUser readRow(ResultSet resultSet) throws SQLException {
+        return readRow(resultSet.getString("id"), resultSet.getString("data"), resultSet.getBytes("payload"));
+    }
+
+    /**
+     * Read a row of the users table, in any format. Rows are only rewritten
+     * when their user is saved for a change: the whole row in the configured
+     * format, or every amount once migrating to {@link StorageMode#NORMALIZED}.
+     */
+    private MineUser readRow(String id, String data, byte[] payload) {
+        MineUser user = adapter.read(id, data, payload, codec);
+        if (user == null) return null;
+
+        if (storageMode == StorageMode.NORMALIZED) user.markMigrating();
+        return user;
+    }
+
+    private MaterialCounter selectMaterials(Connection connection, UUID uuid) throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement(
+                "SELECT material, amount FROM " + MATERIALS_TABLE + " WHERE user_id = ?")) {
+            statement.setString(1, uuid.toString());
+
+            try (ResultSet resultSet = statement.executeQuery()) {
+                MaterialCounter counter = null;
+                while (resultSet.next()) {
+                    if (counter == null) counter = new MaterialCounter();
+                    readMaterial(resultSet, counter);
+                }
+                return counter;
+            }
+        }
+    }
+
+    private void streamRows(Connection connection, String preferences, Consumer<MineUser> consumer,
+                            @Nullable ForkJoinPool decoder) throws SQLException {
+        // Bounds the rows read ahead of the decoders.
+        int permits = decoder == null ? 0 : decoder.getParallelism() * DECODE_QUEUE_FACTOR;
+        Semaphore inFlight = new Semaphore(permits);
+        AtomicReference<RuntimeException> failure = new AtomicReference<>();
+
+        try (Statement statement = createCursor(connection);
+             ResultSet resultSet = statement.executeQuery("SELECT * FROM " + TABLE + " " + preferences)) {
+
+            while (resultSet.next() && failure.get() == null) {
+                String id = resultSet.getString("id");
+                String data = resultSet.getString("data");
+                byte[] payload = resultSet.getBytes("payload");
+
+                if (decoder == null) {
+                    MineUser user = readRow(id, data, payload);
+                    if (user != null) consumer.accept(user);
+                    continue;
                 }
-        );
+
+                inFlight.acquireUninterruptibly();
+                decoder.execute(() -> {
+                    try {
+                        MineUser user = readRow(id, data, payload);
+                        if (user != null) consumer.accept(user);
+                    } catch (RuntimeException e) {
+                        failure.compareAndSet(null, e);
+                    } finally {
+                        inFlight.release();
+                    }
+                });
+            }
+        } finally {
+            // Wait for the rows still being decoded.
+            inFlight.acquireUninterruptibly(permits);
+        }
+
+        if (failure.get() != null) throw failure.get();
+    }
+
+    /**
+     * Stream the normalized users, rows are ordered by user so each
+     * user is complete once the next one starts.
+     */
+    private void streamMaterials(Connection connection, Consumer<MineUser> consumer) throws SQLException {
+        try (Statement statement = createCursor(connection);
+             ResultSet resultSet = statement.executeQuery(
+                     "SELECT user_id, material, amount FROM " + MATERIALS_TABLE + " ORDER BY user_id")) {
+
+            String current = null;
+            MaterialCounter counter = null;
+
+            while (resultSet.next()) {
+                String id = resultSet.getString("user_id");
+                if (!id.equals(current)) {
+                    if (current != null) consumer.accept(new MineUser(UUID.fromString(current), counter, categories));
+                    current = id;
+                    counter = new MaterialCounter();
+                }
+                readMaterial(resultSet, counter);
+            }
+
+            if (current != null) consumer.accept(new MineUser(UUID.fromString(current), counter, categories));
+        }
+    }
+
+    private Statement createCursor(Connection connection) throws SQLException {
+        Statement statement = connection.createStatement(ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+
+        // MySQL only streams rows one by one with this fetch size, buffering the whole result otherwise.
+        statement.setFetchSize(mysql ? Integer.MIN_VALUE : fetchSize);
+        return statement;
+    }
+
+    private void readMaterial(ResultSet resultSet, MaterialCounter counter) throws SQLException {
+        Material material = Material.getMaterial(resultSet.getString("material"));
+        long amount = resultSet.getLong("amount");
+
+        if (material != null && amount > 0) {
+            counter.add(material, amount);
+        }
+    }
+
+    private void saveRows(Connection connection, Collection<MineUser> users) throws SQLException {
+        boolean binary = storageMode == StorageMode.BINARY;
+
+        Map<MineUser, MaterialCounter> snapshots = new HashMap<>(users.size() * 2);
+        if (binary) {
+            Set<Material> used = EnumSet.noneOf(Material.class);
+            for (MineUser user : users) {
+                MaterialCounter snapshot = user.snapshotMaterials();
+                snapshot.forEach((material, amount) -> used.add(material));
+                snapshots.put(user, snapshot);
+            }
+
+            // Ids are committed before any payload references them.
+            idTable.register(connection, used);
+        }
+
+        boolean autoCommit = connection.getAutoCommit();
+        connection.setAutoCommit(false);
+
+        try (PreparedStatement statement = connection.prepareStatement(binary ? BINARY_REPLACE_QUERY : JSON_REPLACE_QUERY)) {
+            int count = 0;
+
+            for (MineUser user : users) {
+                statement.setString(1, user.getUniqueId().toString());
+                if (binary) {
+                    statement.setBytes(2, codec.encode(snapshots.get(user)));
+                } else {
+                    statement.setString(2, adapter.toJson(user));
+                }
+                statement.addBatch();
+
+                if (++count % batchSize == 0) {
+                    commitBatch(connection, statement);
+                }
+            }
+
+            if (count % batchSize != 0) {
+                commitBatch(connection, statement);
+            }
+        } finally {
+            connection.setAutoCommit(autoCommit);
+        }
+    }
+
+    private void saveDeltas(Connection connection, Map<MineUser, MaterialCounter> deltas) throws SQLException {
+        boolean autoCommit = connection.getAutoCommit();
+        connection.setAutoCommit(false);
+
+        try (PreparedStatement statement = connection.prepareStatement(mysql ? MYSQL_UPSERT_QUERY : SQLITE_UPSERT_QUERY)) {
+            int[] count = {0};
+            SQLException[] failure = {null};
+
+            for (Map.Entry<MineUser, MaterialCounter> entry : deltas.entrySet()) {
+                String id = entry.getKey().getUniqueId().toString();
+
+                entry.getValue().forEach((material, amount) -> {
+                    if (failure[0] != null || amount == 0) return;
+                    try {
+                        statement.setString(1, id);
+                        statement.setString(2, material.name());
+                        statement.setLong(3, amount);
+                        statement.setLong(4, amount);
+                        statement.addBatch();
+
+                        if (++count[0] % batchSize == 0) {
+                            statement.executeBatch();
+                        }
+                    } catch (SQLException e) {
+                        failure[0] = e;
+                    }
+                });
+
+                if (failure[0] != null) throw failure[0];
+            }
+
+            if (count[0] % batchSize != 0) {
+                statement.executeBatch();
+            }
+            connection.commit();
+        } catch (SQLException e) {
+            connection.rollback();
+            throw e;
+        } finally {
+            connection.setAutoCommit(autoCommit);
+        }
+    }
+
+    private void saveTotals(Connection connection, Collection<MineUser> users) throws SQLException {
+        boolean autoCommit = connection.getAutoCommit();
+        connection.setAutoCommit(false);
+
+        try (PreparedStatement statement = connection.prepareStatement(TOTALS_REPLACE_QUERY)) {
+            int count = 0;
+
+            for (MineUser user : users) {
+                for (BlockCategory category : user.getCategories()) {
+                    statement.setString(1, user.getUniqueId().toString());
+                    statement.setString(2, category.getId());
+                    statement.setLong(3, user.getTotal(category));
+                    statement.addBatch();
+
+                    if (++count % batchSize == 0) {
+                        commitBatch(connection, statement);
+                    }
+                }
+            }
+
+            if (count % batchSize != 0) {
+                commitBatch(connection, statement);
+            }
+        } finally {
+            connection.setAutoCommit(autoCommit);
+        }
+    }
+
+    private void commitBatch(Connection connection, PreparedStatement statement) throws SQLException {
+        try {
+            statement.executeBatch();
+            connection.commit();
+        } catch (SQLException e) {
+            connection.rollback();
+            throw e;
+        }
+    }
+
+    private void addColumnIfMissing(Connection connection, String table, String column, String type) throws SQLException {
+        DatabaseMetaData metaData = connection.getMetaData();
+
+        for (String name : new String[]{column, column.toUpperCase()}) {
+            try (ResultSet columns = metaData.getColumns(connection.getCatalog(), null, table, name)) {
+                if (columns.next()) return;
+            }
+        }
+
+        try (Statement statement = connection.createStatement()) {
+            statement.executeUpdate("ALTER TABLE " + table + " ADD COLUMN " + column + " " + type);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private <R> R withConnection(ConnectionFunction<R> function) {
+        Object[] result = new Object[1];
+
+        sqlConnector.consume(connection -> {
+            try {
+                result[0] = function.apply(connection);
+            } catch (SQLException e) {
+                throw new IllegalStateException("Database operation failed", e);
+            }
+        });
+
+        return (R) result[0];
+    }
+
+    @FunctionalInterface
+    private interface ConnectionFunction<R> {
+
+        R apply(Connection connection) throws SQLException;
     }
 }
@@ -0,0 +1,181 @@
+package com.jaoow.blockstop.dao;
+
+import com.jaoow.blockstop.model.MineUser;
+import lombok.Getter;
+import org.bukkit.Bukkit;
+import org.bukkit.plugin.Plugin;
+import org.bukkit.scheduler.BukkitTask;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+
+/**
+ * Write-behind layer around {@link UserDao}.
+ * <p>
+ * Users are queued the first time they change after a save and written
+ * in batches by an asynchronous task, so only dirty users reach the database.
+ */
+public class UserWriteBehind {
+
+    private final Plugin plugin;
+    private final UserDao userDao;
+    private final int batchSize;
+
+    // May hold users that were saved meanwhile, these are skipped as clean.
+    private final Queue<MineUser> queue = new ConcurrentLinkedQueue<>();
+    private final Object flushLock = new Object();
+
+    private BukkitTask task;
+
+    @Getter
+    private volatile int lastFlushCount;
+    @Getter
+    private volatile long lastFlushMillis;
+
+    public UserWriteBehind(Plugin plugin, UserDao userDao, int batchSize) {
+        this.plugin = plugin;
+        this.userDao = userDao;
+        this.batchSize = Math.max(1, batchSize);
+    }
+
+    /**
+     * Start the periodic asynchronous flush.
+     *
+     * @param intervalSeconds the seconds between each flush
+     */
+    public void start(long intervalSeconds) {
+        long ticks = Math.max(1, intervalSeconds) * 20L;
+        task = Bukkit.getScheduler().runTaskTimerAsynchronously(plugin, this::flush, ticks, ticks);
+    }
+
+    /**
+     * Flag the user as changed, queueing it for the next flush.
+     *
+     * @param user the user
+     */
+    public void markDirty(MineUser user) {
+        if (user.markDirty()) {
+            queue.add(user);
+        }
+    }
+
+    /**
+     * Save the user asynchronously if it has unsaved changes.
+     *
+     * @param user the user
+     * @return the future completed once the user is written, or right away if clean
+     */
+    public CompletableFuture<Void> saveAsync(MineUser user) {
+        if (!user.isDirty()) return CompletableFuture.completedFuture(null);
+
+        CompletableFuture<Void> future = new CompletableFuture<>();
+        Bukkit.getScheduler().runTaskAsynchronously(plugin, () -> {
+            synchronized (flushLock) {
+                if (user.isDirty()) writeOrRequeue(Collections.singletonList(user));
+            }
+            future.complete(null);
+        });
+        return future;
+    }
+
+    /**
+     * Write the dirty users among the given ones, blocking the caller.
+     *
+     * @param users the users
+     * @return true if every given user is clean afterwards
+     */
+    public boolean saveNow(Collection<MineUser> users) {
+        synchronized (flushLock) {
+            List<MineUser> dirty = new ArrayList<>();
+            for (MineUser user : users) {
+                if (user.isDirty()) dirty.add(user);
+            }
+
+            return dirty.isEmpty() || writeOrRequeue(dirty) == dirty.size();
+        }
+    }
+
+    /**
+     * Write every dirty user in batches, blocking the caller.
+     *
+     * @return the amount of users written
+     */
+    public int flush() {
+        synchronized (flushLock) {
+            long start = System.nanoTime();
+            int written = 0;
+
+            List<MineUser> batch = new ArrayList<>(batchSize);
+            List<MineUser> failed = new ArrayList<>();
+
+            // Stops at the first failure, the users not polled yet stay queued.
+            MineUser user;
+            while (failed.isEmpty() && (user = queue.poll()) != null) {
+                if (!user.isDirty()) continue;
+
+                batch.add(user);
+                if (batch.size() >= batchSize) {
+                    written += write(batch, failed);
+                    batch.clear();
+                }
+            }
+
+            if (!batch.isEmpty()) {
+                written += write(batch, failed);
+            }
+
+            // Queued again only now, otherwise the loop above would keep polling them.
+            failed.forEach(this::markDirty);
+
+            lastFlushCount = written;
+            lastFlushMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+            return written;
+        }
+    }
+
+    /**
+     * Stop the periodic task and drain every pending change.
+     */
+    public void shutdown() {
+        if (task != null) {
+            task.cancel();
+            task = null;
+        }
+        flush();
+    }
+
+    private int writeOrRequeue(List<MineUser> batch) {
+        List<MineUser> failed = new ArrayList<>();
+        int written = write(batch, failed);
+        failed.forEach(this::markDirty);
+        return written;
+    }
+
+    /**
+     * Write the batch, adding its users to the failed ones if it could not be saved.
+     *
+     * @return the amount of users written
+     */
+    private int write(List<MineUser> batch, List<MineUser> failed) {
+        // Cleared before serializing, changes made while writing queue the user again.
+        for (MineUser user : batch) {
+            user.clearDirty();
+        }
+
+        try {
+            userDao.saveAll(batch);
+            return batch.size();
+        } catch (Exception e) {
+            plugin.getLogger().log(Level.WARNING, "Failed to save " + batch.size() + " users, retrying on next flush.", e);
+            failed.addAll(batch);
+            return 0;
+        }
+    }
+}
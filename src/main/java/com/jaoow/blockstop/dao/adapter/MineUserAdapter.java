@@ -3,19 +3,56 @@ package com.jaoow.blockstop.dao.adapter;
 import com.google.gson.FieldNamingPolicy;
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
+import com.jaoow.blockstop.model.BlockCategory;
 import com.jaoow.blockstop.model.MineUser;
 import com.jaoow.sql.executor.adapter.SQLResultAdapter;
 import com.jaoow.sql.executor.result.SimpleResultSet;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.UUID;
 
 public final class MineUserAdapter implements SQLResultAdapter<MineUser> {
 
-    public static final Gson GSON = new GsonBuilder()
-            .setFieldNamingPolicy(FieldNamingPolicy.LOWER_CASE_WITH_UNDERSCORES)
-            .setPrettyPrinting().create();
+    private final BlockCategory[] categories;
+    private final Gson gson;
+
+    /**
+     * @param categories the categories of the users read, ordered by index
+     */
+    public MineUserAdapter(BlockCategory[] categories) {
+        this.categories = categories;
+        this.gson = new GsonBuilder()
+                .setFieldNamingPolicy(FieldNamingPolicy.LOWER_CASE_WITH_UNDERSCORES)
+                .registerTypeAdapter(MineUser.class, new MineUserTypeAdapter(categories))
+                .create();
+    }
 
     @Override
     public MineUser adaptResult(@NotNull SimpleResultSet resultSet) {
-        return GSON.fromJson((String) resultSet.get("data"), MineUser.class);
+        return gson.fromJson((String) resultSet.get("data"), MineUser.class);
+    }
+
+    public String toJson(MineUser user) {
+        return gson.toJson(user, MineUser.class);
+    }
+
+    /**
+     * Read a row of the users table, detecting if it holds
+     * a binary payload or the legacy JSON data.
+     *
+     * @param id      the user id column
+     * @param data    the JSON column
+     * @param payload the binary column
+     * @param codec   the binary codec
+     * @return the user, or null if the row is empty
+     */
+    @Nullable
+    public MineUser read(String id, @Nullable String data, @Nullable byte[] payload, MineUserCodec codec) {
+        if (MineUserCodec.isBinary(payload)) {
+            return new MineUser(UUID.fromString(id), codec.decode(payload), categories);
+        }
+
+        return data == null ? null : gson.fromJson(data, MineUser.class);
     }
 }
@@ -0,0 +1,114 @@
+package com.jaoow.blockstop.dao.adapter;
+
+import com.jaoow.blockstop.dao.MaterialIdTable;
+import com.jaoow.blockstop.model.MaterialCounter;
+import org.bukkit.Material;
+
+import java.io.ByteArrayOutputStream;
+
+/**
+ * Compact binary format of the material counters of a user.
+ * <p>
+ * Layout: a magic byte, a version byte, the varint amount of entries
+ * and then each entry as a varint material id (see {@link MaterialIdTable})
+ * followed by the varint amount.
+ */
+public final class MineUserCodec {
+
+    public static final int MAGIC = 0xB7;
+    public static final int VERSION = 1;
+
+    private final MaterialIdTable idTable;
+
+    public MineUserCodec(MaterialIdTable idTable) {
+        this.idTable = idTable;
+    }
+
+    /**
+     * Check if the payload was written by this codec.
+     *
+     * @param payload the payload
+     * @return true if binary
+     */
+    public static boolean isBinary(byte[] payload) {
+        return payload != null && payload.length >= 2 && (payload[0] & 0xFF) == MAGIC;
+    }
+
+    /**
+     * Encode the counter, every material must be registered in the id table.
+     *
+     * @param materials the counter
+     * @return the payload
+     */
+    public byte[] encode(MaterialCounter materials) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(4 + materials.size() * 4);
+        out.write(MAGIC);
+        out.write(VERSION);
+        writeVarLong(out, materials.size());
+
+        materials.forEach((material, amount) -> {
+            int id = idTable.idOf(material);
+            if (id < 0) {
+                throw new IllegalStateException("Material " + material + " has no id");
+            }
+
+            writeVarLong(out, id);
+            writeVarLong(out, amount);
+        });
+
+        return out.toByteArray();
+    }
+
+    /**
+     * Decode a payload, entries of materials unknown to this server are skipped.
+     *
+     * @param payload the payload
+     * @return the counter
+     */
+    public MaterialCounter decode(byte[] payload) {
+        if (!isBinary(payload)) {
+            throw new IllegalArgumentException("Not a binary user payload");
+        }
+        if (payload[1] != VERSION) {
+            throw new IllegalArgumentException("Unsupported payload version " + payload[1]);
+        }
+
+        int[] position = {2};
+        int size = (int) readVarLong(payload, position);
+
+        MaterialCounter materials = new MaterialCounter(size * 2);
+        for (int index = 0; index < size; index++) {
+            Material material = idTable.materialOf((int) readVarLong(payload, position));
+            long amount = readVarLong(payload, position);
+
+            if (material != null && amount > 0) {
+                materials.add(material, amount);
+            }
+        }
+        return materials;
+    }
+
+    private static void writeVarLong(ByteArrayOutputStream out, long value) {
+        while ((value & ~0x7FL) != 0) {
+            out.write((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.write((int) value);
+    }
+
+    private static long readVarLong(byte[] payload, int[] position) {
+        long value = 0;
+        int shift = 0;
+
+        while (true) {
+            if (position[0] >= payload.length || shift > 63) {
+                throw new IllegalArgumentException("Malformed varint in user payload");
+            }
+
+            byte current = payload[position[0]++];
+            value |= (long) (current & 0x7F) << shift;
+            if ((current & 0x80) == 0) return value;
+            shift += 7;
+        }
+    }
+}
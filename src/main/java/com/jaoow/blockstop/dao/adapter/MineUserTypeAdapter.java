@@ -0,0 +1,106 @@
+package com.jaoow.blockstop.dao.adapter;
+
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+import com.jaoow.blockstop.model.BlockCategory;
+import com.jaoow.blockstop.model.MaterialCounter;
+import com.jaoow.blockstop.model.MineUser;
+import org.bukkit.Material;
+
+import java.io.IOException;
+import java.util.UUID;
+
+/**
+ * Gson adapter that keeps the legacy {@code {"unique_id": ..., "material_map": {...}}}
+ * shape while reading into and writing from the primitive counters of {@link MineUser}.
+ */
+public final class MineUserTypeAdapter extends TypeAdapter<MineUser> {
+
+    private static final String UNIQUE_ID = "unique_id";
+    private static final String MATERIAL_MAP = "material_map";
+
+    private final BlockCategory[] categories;
+
+    /**
+     * @param categories the categories of the users read, ordered by index
+     */
+    public MineUserTypeAdapter(BlockCategory[] categories) {
+        this.categories = categories;
+    }
+
+    @Override
+    public void write(JsonWriter out, MineUser user) throws IOException {
+        if (user == null) {
+            out.nullValue();
+            return;
+        }
+
+        out.beginObject();
+        out.name(UNIQUE_ID).value(user.getUniqueId().toString());
+        out.name(MATERIAL_MAP).beginObject();
+
+        IOException[] failure = new IOException[1];
+        user.snapshotMaterials().forEach((material, amount) -> {
+            if (failure[0] != null) return;
+            try {
+                out.name(material.name()).value((double) amount);
+            } catch (IOException e) {
+                failure[0] = e;
+            }
+        });
+
+        if (failure[0] != null) throw failure[0];
+
+        out.endObject();
+        out.endObject();
+    }
+
+    @Override
+    public MineUser read(JsonReader in) throws IOException {
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return null;
+        }
+
+        UUID uniqueId = null;
+        MaterialCounter materials = new MaterialCounter();
+
+        in.beginObject();
+        while (in.hasNext()) {
+            String name = in.nextName();
+
+            if (UNIQUE_ID.equals(name)) {
+                uniqueId = UUID.fromString(in.nextString());
+            } else if (MATERIAL_MAP.equals(name)) {
+                readMaterials(in, materials);
+            } else {
+                in.skipValue();
+            }
+        }
+        in.endObject();
+
+        if (uniqueId == null) return null;
+
+        return new MineUser(uniqueId, materials, categories);
+    }
+
+    private void readMaterials(JsonReader in, MaterialCounter materials) throws IOException {
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return;
+        }
+
+        in.beginObject();
+        while (in.hasNext()) {
+            Material material = Material.getMaterial(in.nextName());
+            long amount = (long) in.nextDouble();
+
+            if (material != null && amount > 0) {
+                materials.add(material, amount);
+            }
+        }
+        in.endObject();
+    }
+}
@@ -1,24 +1,24 @@
 package com.jaoow.blockstop.inventory;
 
 import com.jaoow.blockstop.BlocksTop;
+import com.jaoow.blockstop.model.BlockCategory;
 import com.jaoow.blockstop.utils.inventory.InventoryBuilder;
 import com.jaoow.blockstop.utils.inventory.ItemBuilder;
+import org.bukkit.configuration.ConfigurationSection;
 import org.bukkit.configuration.file.FileConfiguration;
 import org.bukkit.entity.Player;
 import org.bukkit.inventory.ItemStack;
 
-import java.util.List;
+import java.util.LinkedHashMap;
+import java.util.Map;
 
 public class CategoriesInv {
 
     public static final String title;
     public static final int size;
 
-    public static final ItemStack allItem;
-    public static final Integer allItemSlot;
-
-    public static final ItemStack oresItem;
-    public static final Integer oresItemSlot;
+    public static final Map<BlockCategory, ItemStack> items = new LinkedHashMap<>();
+    public static final Map<BlockCategory, Integer> slots = new LinkedHashMap<>();
 
 
     static {
@@ -27,17 +27,21 @@ public class CategoriesInv {
         title = config.getString("inventories.categories.title");
         size = config.getInt("inventories.categories.size");
 
-        allItem = ItemBuilder.fromSection(config.getConfigurationSection("inventories.categories.items.all")).build();
-        allItemSlot = config.getInt("inventories.categories.items.all.slot");
+        for (BlockCategory category : BlocksTop.getInstance().getCategoryRegistry().getCategories()) {
+            ConfigurationSection section = config.getConfigurationSection("inventories.categories.items." + category.getId());
+            if (section == null) continue;
 
-        oresItem = ItemBuilder.fromSection(config.getConfigurationSection("inventories.categories.items.ores")).build();
-        oresItemSlot = config.getInt("inventories.categories.items.ores.slot");
+            items.put(category, ItemBuilder.fromSection(section).build());
+            slots.put(category, section.getInt("slot"));
+        }
     }
 
     public void open(Player player) {
-        new InventoryBuilder<InventoryBuilder.VoidItem>(title, size)
-                .withItem(allItemSlot, allItem, (event, value) -> new AllInv().open(player))
-                .withItem(oresItemSlot, oresItem, (event, value) -> new OreInv().open(player))
-                .open(player);
+        InventoryBuilder<InventoryBuilder.VoidItem> builder = new InventoryBuilder<>(title, size);
+
+        items.forEach((category, item) ->
+                builder.withItem(slots.get(category), item, (event, value) -> new LeaderboardInv(category).open(player)));
+
+        builder.open(player);
     }
 }
@@ -0,0 +1,106 @@
+package com.jaoow.blockstop.inventory;
+
+import lombok.AllArgsConstructor;
+import lombok.EqualsAndHashCode;
+import org.bukkit.inventory.ItemStack;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Bounded cache of the rendered leaderboard heads.
+ * <p>
+ * A head is keyed by its board, position, user, name and score, so it is
+ * only rendered again once one of them changes. The least recently used heads
+ * are dropped past the capacity, and callers always get their own copy.
+ */
+public class HeadCache {
+
+    private final int capacity;
+    private final Map<Key, ItemStack> items;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    /**
+     * @param capacity the maximum amount of heads kept, zero to disable the cache
+     */
+    public HeadCache(int capacity) {
+        this.capacity = Math.max(0, capacity);
+        this.items = new LinkedHashMap<Key, ItemStack>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, ItemStack> eldest) {
+                return size() > HeadCache.this.capacity;
+            }
+        };
+    }
+
+    /**
+     * Get the head of the user at the position, rendering it when not cached.
+     *
+     * @param board    the id of the board
+     * @param position the position starting at 1
+     * @param uuid     the user id
+     * @param name     the name shown for the user
+     * @param score    the score of the user
+     * @param renderer the renderer of the head
+     * @return a copy of the head
+     */
+    public ItemStack get(String board, int position, UUID uuid, String name, long score, Supplier<ItemStack> renderer) {
+        Key key = new Key(board, position, uuid, name, score);
+
+        ItemStack item;
+        synchronized (items) {
+            item = items.get(key);
+        }
+
+        if (item != null) {
+            hits.incrementAndGet();
+            return item.clone();
+        }
+
+        misses.incrementAndGet();
+        item = renderer.get();
+
+        if (capacity > 0) {
+            synchronized (items) {
+                items.put(key, item.clone());
+            }
+        }
+        return item;
+    }
+
+    public void clear() {
+        synchronized (items) {
+            items.clear();
+        }
+    }
+
+    public int size() {
+        synchronized (items) {
+            return items.size();
+        }
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    @EqualsAndHashCode
+    @AllArgsConstructor
+    private static final class Key {
+
+        private final String board;
+        private final int position;
+        private final UUID uuid;
+        private final String name;
+        private final long score;
+    }
+}
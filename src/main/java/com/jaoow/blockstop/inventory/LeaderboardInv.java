@@ -0,0 +1,274 @@
+package com.jaoow.blockstop.inventory;
+
+import com.jaoow.blockstop.BlocksTop;
+import com.jaoow.blockstop.manager.MineUserManager;
+import com.jaoow.blockstop.manager.NameCache;
+import com.jaoow.blockstop.manager.SkullCache;
+import com.jaoow.blockstop.model.BlockCategory;
+import com.jaoow.blockstop.model.LeaderboardSnapshot;
+import com.jaoow.blockstop.model.TimeWindow;
+import com.jaoow.blockstop.utils.Utils;
+import com.jaoow.blockstop.utils.inventory.InventoryBuilder;
+import com.jaoow.blockstop.utils.inventory.ItemBuilder;
+import org.bukkit.Material;
+import org.bukkit.configuration.ConfigurationSection;
+import org.bukkit.configuration.file.FileConfiguration;
+import org.bukkit.entity.Player;
+import org.bukkit.inventory.ItemStack;
+import org.bukkit.inventory.meta.SkullMeta;
+import org.jetbrains.annotations.Nullable;
+
+import java.text.DecimalFormat;
+import java.util.List;
+import java.util.UUID;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+public class LeaderboardInv {
+
+    // Users shown per page, the slots from 10 to 34 without the borders.
+    private static final int PAGE_SIZE = 21;
+
+    // Id of the board in the head cache.
+    private final String board;
+
+    private final Source source;
+
+    // Page shown by this menu, to tell when the leaderboard changed under it.
+    private LeaderboardPages.Page shown;
+    private int shownFirst = -1;
+    private int shownAmount;
+
+    // Category boards can switch between windows, material boards cannot.
+    private final BlockCategory category;
+    private final TimeWindow window;
+
+    private final String title;
+    private final int size;
+
+    private final String name;
+    private final List<String> lore;
+
+    public LeaderboardInv(BlockCategory category) {
+        this(category, null);
+    }
+
+    /**
+     * Menu of a category board.
+     *
+     * @param category the category
+     * @param window   the window, or null for the lifetime totals
+     */
+    public LeaderboardInv(BlockCategory category, @Nullable TimeWindow window) {
+        this(section(category.getId()), category.getId() + (window == null ? "" : ":" + window.getId()), null, category, window,
+                new Source() {
+                    @Override
+                    public int count() {
+                        return BlocksTop.getInstance().getSnapshots().getRankedCount(category, window);
+                    }
+
+                    @Override
+                    public LeaderboardSnapshot page(int from, int limit) {
+                        return BlocksTop.getInstance().getSnapshots().getPage(category, window, from, limit);
+                    }
+
+                    @Override
+                    public long version(int from, int limit) {
+                        return BlocksTop.getInstance().getSnapshots().getVersion(category, window, from, limit);
+                    }
+                });
+    }
+
+    /**
+     * Menu of a material board, which must be ready.
+     *
+     * @param material the material
+     */
+    public LeaderboardInv(Material material) {
+        this(section("material"), "material:" + material.name(), Utils.formatMaterial(material), null, null,
+                new Source() {
+                    @Override
+                    public int count() {
+                        return userManager().getMaterialBoards().getRankedCount(material);
+                    }
+
+                    @Override
+                    public LeaderboardSnapshot page(int from, int limit) {
+                        return LeaderboardSnapshot.of(userManager().getMaterialBoards().getRange(material, from, limit), new DecimalFormat("#,##0.#"));
+                    }
+
+                    @Override
+                    public long version(int from, int limit) {
+                        return userManager().getMaterialBoards().getVersion(material);
+                    }
+                });
+    }
+
+    private LeaderboardInv(ConfigurationSection section, String board, @Nullable String material, @Nullable BlockCategory category,
+                           @Nullable TimeWindow window, Source source) {
+        this.board = board;
+        this.source = source;
+        this.category = category;
+        this.window = window;
+
+        String title = section.getString("title");
+        if (material != null) title = title.replace("%material%", material);
+        if (window != null) title += " - " + windowName(window);
+
+        this.title = title;
+        this.size = section.getInt("size");
+
+        this.name = section.getString("baseItem.name");
+        this.lore = section.getStringList("baseItem.lore").stream()
+                .map(line -> material == null ? line : line.replace("%material%", material))
+                .collect(Collectors.toList());
+    }
+
+    private static ConfigurationSection section(String id) {
+        FileConfiguration config = BlocksTop.getInstance().getConfig();
+        ConfigurationSection section = config.getConfigurationSection("inventories." + id);
+        return section != null ? section : config.getConfigurationSection("inventories.all");
+    }
+
+    private static MineUserManager userManager() {
+        return BlocksTop.getInstance().getUserManager();
+    }
+
+    /**
+     * Get the display name of the window.
+     *
+     * @param window the window, or null for the lifetime totals
+     * @return the name
+     */
+    public static String windowName(@Nullable TimeWindow window) {
+        String id = window == null ? "lifetime" : window.getId();
+        return BlocksTop.getInstance().getConfig().getString("time-windows.names." + id, id);
+    }
+
+    public void open(Player player) {
+        InventoryBuilder<InventoryBuilder.VoidItem> builder = new InventoryBuilder<InventoryBuilder.VoidItem>(title, size)
+                .withPage(1, PAGE_SIZE)
+                .withSlotStart(10)
+                .withSlotSkip(2, 17, 26, 35, 44)
+                .withSlotEnd(34)
+                .withLazyItemStacks(source::count, this::render, (event, value) -> {});
+        builder.withRefresh(() -> isStale(builder.getPage()));
+
+        FileConfiguration config = BlocksTop.getInstance().getConfig();
+        ConfigurationSection back = config.getConfigurationSection("inventories.pagination.back");
+        if (back != null) builder.withBackPage(back.getInt("slot"), ItemBuilder.fromSection(back).build());
+
+        ConfigurationSection next = config.getConfigurationSection("inventories.pagination.next");
+        if (next != null) builder.withNextPage(next.getInt("slot"), ItemBuilder.fromSection(next).build());
+
+        ConfigurationSection button = config.getConfigurationSection("inventories.window-button");
+        if (category != null && button != null && userManager().getWindows().isEnabled()) {
+            ItemStack item = ItemBuilder.fromSection(button).build(
+                    new String[]{"%window%"},
+                    new String[]{windowName(window)});
+
+            builder.withItem(button.getInt("slot"), item, (event, value) -> new LeaderboardInv(category, nextWindow()).open(player));
+        }
+
+        builder.open(player);
+    }
+
+    /**
+     * Cycle from the lifetime totals through every window.
+     */
+    private TimeWindow nextWindow() {
+        TimeWindow[] windows = TimeWindow.values();
+        if (window == null) return windows[0];
+        return window.ordinal() + 1 < windows.length ? windows[window.ordinal() + 1] : null;
+    }
+
+    /**
+     * Check if the page shown is outdated, its leaderboard having changed
+     * or some of its heads waiting for a name or skull.
+     *
+     * @param page the page of the menu
+     */
+    private boolean isStale(int page) {
+        int first = (page - 1) * PAGE_SIZE;
+        if (shown == null || first != shownFirst) return true;
+
+        return !shown.isComplete() || shown.getVersion() != source.version(shownFirst, shownAmount);
+    }
+
+    /**
+     * Get the heads of one page only, whatever the size of the leaderboard,
+     * shared with the other menus showing the same page.
+     *
+     * @param first  the position of the first user, starting at 0
+     * @param amount the amount of users in the page
+     * @return the heads
+     */
+    private List<ItemStack> render(int first, int amount) {
+        LeaderboardPages pages = BlocksTop.getInstance().getLeaderboardPages();
+
+        shown = pages.get(board, first, amount, source.version(first, amount), items -> render(first, amount, items));
+        shownFirst = first;
+        shownAmount = amount;
+        return shown.getItems();
+    }
+
+    /**
+     * Create the heads of the page.
+     *
+     * @return if every head is complete
+     */
+    private boolean render(int first, int amount, List<ItemStack> items) {
+        LeaderboardSnapshot snapshot = source.page(first, amount);
+        boolean complete = true;
+
+        HeadCache cache = BlocksTop.getInstance().getHeadCache();
+        NameCache names = BlocksTop.getInstance().getNameCache();
+        SkullCache skulls = BlocksTop.getInstance().getSkullCache();
+        for (int index = 0; index < snapshot.size(); index++) {
+            int position = first + index + 1;
+            UUID uuid = snapshot.getUser(index);
+            String value = snapshot.getFormattedScore(index);
+
+            // Unknown names show the placeholder and skulls not resolved yet the default head.
+            String known = names.getIfPresent(uuid);
+            String playerName = known != null ? known : names.getName(uuid);
+            SkullMeta skull = known != null ? skulls.get(uuid, known) : null;
+
+            Supplier<ItemStack> renderer = () -> {
+                ItemBuilder builder = new ItemBuilder(Utils.HEAD_MATERIAL);
+                if (skull != null) builder.withMeta(skull);
+
+                return builder.withName(name).withLore(lore).build(
+                        new String[]{"%name%", "%position%", "%value%"},
+                        new String[]{playerName, String.valueOf(position), value});
+            };
+
+            // Only complete heads are cached.
+            items.add(skull != null
+                    ? cache.get(board, position, uuid, playerName, snapshot.getScore(index), renderer)
+                    : renderer.get());
+            complete &= skull != null;
+        }
+        return complete;
+    }
+
+    /**
+     * Source of the users of the leaderboard shown.
+     */
+    private interface Source {
+
+        int count();
+
+        /**
+         * @param from  the first position, starting at 0
+         * @param limit the maximum amount of users
+         * @return the users of the page
+         */
+        LeaderboardSnapshot page(int from, int limit);
+
+        /**
+         * @return the version of the page, changed whenever its users or scores may have
+         */
+        long version(int from, int limit);
+    }
+}
@@ -0,0 +1,121 @@
+package com.jaoow.blockstop.inventory;
+
+import com.jaoow.blockstop.utils.inventory.InventoryBuilder;
+import lombok.Getter;
+import org.bukkit.Bukkit;
+import org.bukkit.inventory.ItemStack;
+import org.bukkit.plugin.Plugin;
+import org.bukkit.scheduler.BukkitTask;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Pages of the leaderboard menus, shared by every viewer, and their refresh.
+ * <p>
+ * A page is rendered once per version of its leaderboard, so players viewing
+ * the same board and page share the heads. At a fixed rate the open menus
+ * whose leaderboard changed are formatted again, writing only the changed slots.
+ * Everything runs on the main thread.
+ */
+public class LeaderboardPages implements Runnable {
+
+    private static final long IDLE_MILLIS = TimeUnit.MINUTES.toMillis(1);
+
+    private final Plugin plugin;
+    private final Map<String, Page> pages = new HashMap<>();
+
+    private long tick;
+    private BukkitTask task;
+
+    public LeaderboardPages(Plugin plugin) {
+        this.plugin = plugin;
+    }
+
+    /**
+     * Start refreshing the open menus.
+     *
+     * @param intervalTicks the ticks between each refresh
+     */
+    public void start(long intervalTicks) {
+        long ticks = Math.max(1, intervalTicks);
+        task = Bukkit.getScheduler().runTaskTimer(plugin, this, ticks, ticks);
+    }
+
+    public void stop() {
+        if (task != null) {
+            task.cancel();
+            task = null;
+        }
+    }
+
+    /**
+     * Get the page, rendering it only if the leaderboard changed since it was
+     * last rendered. Incomplete pages, waiting for names or skulls, are rendered
+     * again at most once per refresh.
+     *
+     * @param board    the id of the board
+     * @param first    the position of the first user, starting at 0
+     * @param amount   the amount of users in the page
+     * @param version  the version of the leaderboard
+     * @param renderer the renderer of the page
+     * @return the page
+     */
+    public Page get(String board, int first, int amount, long version, Renderer renderer) {
+        String key = board + "#" + first + "#" + amount;
+
+        Page page = pages.get(key);
+        if (page == null || page.version != version || (!page.complete && page.tick != tick)) {
+            page = new Page(version, tick);
+            page.complete = renderer.render(page.items);
+            pages.put(key, page);
+        }
+
+        page.lastAccess = System.currentTimeMillis();
+        return page;
+    }
+
+    @Override
+    public void run() {
+        tick++;
+
+        for (InventoryBuilder<?> builder : InventoryBuilder.getOpenInventories()) {
+            builder.refresh();
+        }
+
+        long now = System.currentTimeMillis();
+        pages.values().removeIf(page -> now - page.lastAccess >= IDLE_MILLIS);
+    }
+
+    /**
+     * Class called to render the heads of a page
+     */
+    @FunctionalInterface
+    public interface Renderer {
+
+        /**
+         * @param items the list to add the heads to
+         * @return if every head is complete
+         */
+        boolean render(List<ItemStack> items);
+    }
+
+    @Getter
+    public static final class Page {
+
+        private final long version;
+        private final long tick;
+        private final List<ItemStack> items = new ArrayList<>();
+
+        private boolean complete;
+        private long lastAccess;
+
+        private Page(long version, long tick) {
+            this.version = version;
+            this.tick = tick;
+        }
+    }
+}
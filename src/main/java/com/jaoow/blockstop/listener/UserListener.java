@@ -0,0 +1,49 @@
+package com.jaoow.blockstop.listener;
+
+import com.jaoow.blockstop.manager.MineUserManager;
+import com.jaoow.blockstop.manager.NameCache;
+import com.jaoow.blockstop.manager.SkullCache;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.Listener;
+import org.bukkit.event.block.BlockBreakEvent;
+import org.bukkit.event.player.AsyncPlayerPreLoginEvent;
+import org.bukkit.event.player.PlayerJoinEvent;
+import org.bukkit.event.player.PlayerQuitEvent;
+
+public class UserListener implements Listener {
+
+    private final MineUserManager userManager;
+    private final NameCache nameCache;
+    private final SkullCache skullCache;
+
+    public UserListener(MineUserManager userManager, NameCache nameCache, SkullCache skullCache) {
+        this.userManager = userManager;
+        this.nameCache = nameCache;
+        this.skullCache = skullCache;
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onPreLogin(AsyncPlayerPreLoginEvent event) {
+        if (event.getLoginResult() != AsyncPlayerPreLoginEvent.Result.ALLOWED) return;
+        userManager.loadOrCreate(event.getUniqueId());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onJoin(PlayerJoinEvent event) {
+        // Covers logins that happened before the plugin was enabled.
+        userManager.handleJoin(event.getPlayer().getUniqueId());
+        nameCache.handleJoin(event.getPlayer().getUniqueId(), event.getPlayer().getName());
+        skullCache.request(event.getPlayer().getUniqueId(), event.getPlayer().getName());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onQuit(PlayerQuitEvent event) {
+        userManager.handleQuit(event.getPlayer().getUniqueId());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onBlock(BlockBreakEvent event) {
+        userManager.addMaterial(event.getPlayer().getUniqueId(), event.getBlock().getType());
+    }
+}
@@ -0,0 +1,118 @@
+package com.jaoow.blockstop.manager;
+
+import com.jaoow.blockstop.model.BlockCategory;
+import org.bukkit.Material;
+import org.bukkit.configuration.ConfigurationSection;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.regex.Pattern;
+
+/**
+ * Registry of the block categories configured in {@code config.yml}.
+ * <p>
+ * Every category is compiled once into a bitset, so checking if a broken
+ * block belongs to a category is a single bit test. The {@value #ALL}
+ * category is always registered first and contains every material.
+ */
+public class CategoryRegistry {
+
+    public static final String ALL = "all";
+
+    private final Map<String, BlockCategory> categories = new LinkedHashMap<>();
+    private BlockCategory[] array = new BlockCategory[0];
+
+    /**
+     * Load the categories of the section, replacing the current ones.
+     *
+     * @param section the categories section, may be null
+     */
+    public void load(@Nullable ConfigurationSection section) {
+        categories.clear();
+
+        BitSet everything = new BitSet();
+        everything.set(0, Material.values().length);
+        register(ALL, everything);
+
+        if (section != null) {
+            for (String id : section.getKeys(false)) {
+                if (id.equalsIgnoreCase(ALL)) continue;
+
+                register(id.toLowerCase(Locale.ROOT), compile(section.getStringList(id)));
+            }
+        }
+
+        array = categories.values().toArray(new BlockCategory[0]);
+    }
+
+    @NotNull
+    public BlockCategory getAll() {
+        return categories.get(ALL);
+    }
+
+    public Optional<BlockCategory> getCategory(String id) {
+        return id == null ? Optional.empty() : Optional.ofNullable(categories.get(id.toLowerCase(Locale.ROOT)));
+    }
+
+    public Collection<BlockCategory> getCategories() {
+        return Collections.unmodifiableCollection(categories.values());
+    }
+
+    /**
+     * Get the categories ordered by index, the returned array must not be modified.
+     *
+     * @return the categories
+     */
+    public BlockCategory[] getCategoryArray() {
+        return array;
+    }
+
+    public int size() {
+        return array.length;
+    }
+
+    private void register(String id, BitSet materials) {
+        categories.put(id, new BlockCategory(id, categories.size(), materials));
+    }
+
+    /**
+     * Compile material names and wildcards such as {@code *_ORE} into a bitset.
+     * Names unknown to the running server version are ignored.
+     *
+     * @param entries the entries
+     * @return the bitset keyed by ordinal
+     */
+    private static BitSet compile(List<String> entries) {
+        BitSet bitSet = new BitSet();
+
+        for (String entry : entries) {
+            String name = entry.trim().toUpperCase(Locale.ROOT);
+
+            if (name.contains("*")) {
+                Pattern pattern = Pattern.compile(("\\Q" + name + "\\E").replace("*", "\\E.*\\Q"));
+                for (Material material : Material.values()) {
+                    if (!isLegacy(material) && pattern.matcher(material.name()).matches()) {
+                        bitSet.set(material.ordinal());
+                    }
+                }
+            } else {
+                Material material = Material.getMaterial(name);
+                if (material != null) bitSet.set(material.ordinal());
+            }
+        }
+
+        return bitSet;
+    }
+
+    private static boolean isLegacy(Material material) {
+        return material.name().startsWith("LEGACY_");
+    }
+}
@@ -0,0 +1,310 @@
+package com.jaoow.blockstop.manager;
+
+import com.jaoow.blockstop.model.BlockCategory;
+import com.jaoow.blockstop.model.MineUser;
+import com.jaoow.blockstop.utils.Pair;
+import org.bukkit.Material;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Lightweight index of the category totals of every known user.
+ * <p>
+ * Leaderboards are served from here, so users do not need to be resident
+ * to be ranked. Each exact category keeps its users ordered by score, updated
+ * incrementally as totals change, so reading a top list never sorts.
+ * Approximate categories keep no per-user totals, only their top users.
+ */
+public class LeaderboardIndex {
+
+    private static final Comparator<Pair<UUID, Long>> SEED_ORDER = Comparator.comparingLong(Pair::getValue);
+
+    private final BlockCategory[] categories;
+
+    // Totals of the exact categories as currently ranked, by slot, owned by the index.
+    private final Map<UUID, long[]> totals = new ConcurrentHashMap<>();
+    private final ScoreRanking[] rankings;
+
+    // Categories ranked approximately, null for the exact ones.
+    private final SpaceSaving[] approximations;
+
+    // Slot of each exact category in the totals, -1 for the approximate ones.
+    private final int[] slots;
+    private int exactCount;
+
+    // Exact top users of the approximate categories while loading, smallest first.
+    private final List<PriorityQueue<Pair<UUID, Long>>> seeds = new ArrayList<>();
+
+    // Approximations are only offered increments once seeded with the exact top users.
+    private volatile boolean seeded;
+
+    /**
+     * @param categories the categories, ordered by index
+     */
+    public LeaderboardIndex(BlockCategory[] categories) {
+        this.categories = categories;
+        this.rankings = new ScoreRanking[categories.length];
+        this.approximations = new SpaceSaving[categories.length];
+        this.slots = new int[categories.length];
+        for (int i = 0; i < categories.length; i++) {
+            rankings[i] = new ScoreRanking();
+            seeds.add(null);
+        }
+        assignSlots();
+    }
+
+    /**
+     * Rank the category approximately, keeping only its top users in bounded
+     * memory, see {@link SpaceSaving}. Must be called before any user is indexed,
+     * and {@link #seedApproximations()} once the users are loaded.
+     *
+     * @param category the category
+     * @param capacity the amount of users monitored
+     */
+    public void approximate(BlockCategory category, int capacity) {
+        int index = category.getIndex();
+        approximations[index] = new SpaceSaving(capacity);
+        seeds.set(index, new PriorityQueue<>(SEED_ORDER));
+        assignSlots();
+    }
+
+    public boolean isApproximate(BlockCategory category) {
+        return approximations[category.getIndex()] != null;
+    }
+
+    /**
+     * Get the maximum overestimation of the scores of an approximate category.
+     *
+     * @param category the category
+     * @return the error bound, zero for exact categories
+     */
+    public long getErrorBound(BlockCategory category) {
+        SpaceSaving approximation = approximations[category.getIndex()];
+        return approximation == null ? 0 : approximation.getErrorBound();
+    }
+
+    /**
+     * Get the maximum overestimation of the score of the user.
+     *
+     * @param uuid     the user id
+     * @param category the category
+     * @return the error of the user, zero for exact categories
+     */
+    public long getError(UUID uuid, BlockCategory category) {
+        SpaceSaving approximation = approximations[category.getIndex()];
+        return approximation == null ? 0 : approximation.error(uuid);
+    }
+
+    /**
+     * Index the current totals of a loaded user, called again whenever they change.
+     *
+     * @param user the user
+     */
+    public void track(MineUser user) {
+        put(user.getUniqueId(), user.getTotals());
+    }
+
+    /**
+     * Index the totals of a user, moving it only in the rankings
+     * of the exact categories whose score changed. Before the approximations
+     * are seeded, the totals of the approximate categories are kept as
+     * candidates when among the best ones, and ignored afterwards, see {@link #record}.
+     *
+     * @param uuid   the user id
+     * @param values the totals indexed by category
+     */
+    public void put(UUID uuid, long[] values) {
+        if (!seeded) collectSeeds(uuid, values);
+        if (exactCount == 0) return;
+
+        totals.compute(uuid, (id, ranked) -> {
+            if (ranked == null) ranked = new long[exactCount];
+
+            for (int i = 0; i < rankings.length; i++) {
+                int slot = slots[i];
+                if (slot < 0) continue;
+
+                long score = i < values.length ? values[i] : 0;
+                if (score == ranked[slot]) continue;
+
+                // Users without blocks in a category are left out of its ranking.
+                if (ranked[slot] > 0) rankings[i].remove(id, ranked[slot]);
+                if (score > 0) rankings[i].insert(id, score);
+                ranked[slot] = score;
+            }
+            return ranked;
+        });
+    }
+
+    /**
+     * Count blocks broken by the user in the approximate categories of the material.
+     *
+     * @param uuid     the user id
+     * @param material the broken material
+     * @param amount   the amount of blocks
+     */
+    public void record(UUID uuid, Material material, long amount) {
+        if (!seeded) return;
+
+        for (int i = 0; i < approximations.length; i++) {
+            if (approximations[i] != null && categories[i].contains(material)) {
+                approximations[i].offer(uuid, amount);
+            }
+        }
+    }
+
+    /**
+     * Seed the approximate categories with their exact top users from the loaded
+     * totals, the later updates only offering the increments. Must be called once
+     * loading finished, before any other update.
+     */
+    public void seedApproximations() {
+        for (int i = 0; i < approximations.length; i++) {
+            PriorityQueue<Pair<UUID, Long>> best = seeds.get(i);
+            if (best == null) continue;
+
+            List<Pair<UUID, Long>> ordered;
+            synchronized (best) {
+                ordered = new ArrayList<>(best);
+                best.clear();
+            }
+
+            ordered.sort(SEED_ORDER.reversed());
+            for (Pair<UUID, Long> entry : ordered) {
+                approximations[i].seed(entry.getKey(), entry.getValue());
+            }
+            seeds.set(i, null);
+        }
+        seeded = true;
+    }
+
+    /**
+     * Get the score of the user, estimated for approximate categories.
+     *
+     * @param uuid     the user id
+     * @param category the category
+     * @return the score, zero when unknown or not monitored
+     */
+    public long getScore(UUID uuid, BlockCategory category) {
+        int index = category.getIndex();
+        if (index >= rankings.length) return 0;
+
+        SpaceSaving approximation = approximations[index];
+        if (approximation != null) return approximation.estimate(uuid);
+
+        long[] values = totals.get(uuid);
+        return values == null ? 0 : values[slots[index]];
+    }
+
+    /**
+     * Get the best users of the category, highest score first.
+     *
+     * @param category the category
+     * @param limit    the maximum amount of users
+     * @return the users and their scores
+     */
+    public List<Pair<UUID, Long>> getTop(BlockCategory category, int limit) {
+        return getRange(category, 0, limit);
+    }
+
+    /**
+     * Get the users of the category from the given position on, highest score first.
+     * Scores of approximate categories are the estimates they are ordered by.
+     *
+     * @param category the category
+     * @param from     the first position, starting at 0
+     * @param limit    the maximum amount of users
+     * @return the users and their scores
+     */
+    public List<Pair<UUID, Long>> getRange(BlockCategory category, int from, int limit) {
+        if (limit <= 0 || category.getIndex() >= rankings.length) return new ArrayList<>();
+
+        SpaceSaving approximation = approximations[category.getIndex()];
+        return approximation != null
+                ? approximation.range(from, limit)
+                : rankings[category.getIndex()].range(from, limit);
+    }
+
+    /**
+     * Get the position of the user in the category.
+     *
+     * @param uuid     the user id
+     * @param category the category
+     * @return the position starting at 1, estimated for approximate categories,
+     * or -1 if the user has no blocks in the category or is not monitored
+     */
+    public int getRank(UUID uuid, BlockCategory category) {
+        SpaceSaving approximation = approximations[category.getIndex()];
+        if (approximation != null) return approximation.rank(uuid);
+
+        long score = getScore(uuid, category);
+        if (score <= 0) return -1;
+
+        return rankings[category.getIndex()].rank(uuid, score);
+    }
+
+    /**
+     * Get the amount of users ranked in the category.
+     *
+     * @param category the category
+     * @return the amount of users
+     */
+    public int getRankedCount(BlockCategory category) {
+        if (category.getIndex() >= rankings.length) return 0;
+
+        SpaceSaving approximation = approximations[category.getIndex()];
+        return approximation != null ? approximation.size() : rankings[category.getIndex()].size();
+    }
+
+    /**
+     * Get the version of the ranking of the category, changed by every update.
+     *
+     * @param category the category
+     * @return the version
+     */
+    public long getVersion(BlockCategory category) {
+        if (category.getIndex() >= rankings.length) return 0;
+
+        SpaceSaving approximation = approximations[category.getIndex()];
+        return approximation != null ? approximation.getVersion() : rankings[category.getIndex()].getVersion();
+    }
+
+    /**
+     * Get the amount of users with totals kept, those ranked in the exact categories.
+     *
+     * @return the amount of users
+     */
+    public int size() {
+        return totals.size();
+    }
+
+    private void collectSeeds(UUID uuid, long[] values) {
+        for (int i = 0; i < approximations.length; i++) {
+            PriorityQueue<Pair<UUID, Long>> best = seeds.get(i);
+            long score = i < values.length ? values[i] : 0;
+            if (best == null || score <= 0) continue;
+
+            // Smallest on top, so it is the one dropped past the capacity.
+            synchronized (best) {
+                best.add(Pair.of(uuid, score));
+                if (best.size() > approximations[i].getCapacity()) best.poll();
+            }
+        }
+    }
+
+    private void assignSlots() {
+        Arrays.fill(slots, -1);
+
+        exactCount = 0;
+        for (int i = 0; i < slots.length; i++) {
+            if (approximations[i] == null) slots[i] = exactCount++;
+        }
+    }
+}
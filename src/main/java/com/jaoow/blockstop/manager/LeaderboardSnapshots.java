@@ -0,0 +1,197 @@
+package com.jaoow.blockstop.manager;
+
+import com.jaoow.blockstop.model.BlockCategory;
+import com.jaoow.blockstop.model.LeaderboardSnapshot;
+import com.jaoow.blockstop.model.TimeWindow;
+import org.bukkit.Bukkit;
+import org.bukkit.plugin.Plugin;
+import org.bukkit.scheduler.BukkitTask;
+import org.jetbrains.annotations.Nullable;
+
+import java.text.DecimalFormat;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Publishes snapshots of the top of every category leaderboard.
+ * <p>
+ * An asynchronous task reads the rankings at a fixed interval and swaps the
+ * whole set of snapshots at once, so menus never compute a leaderboard on
+ * the main thread and every reader sees a consistent set. Leaderboards whose
+ * ranking did not change keep their snapshot, so their pages are not rendered again.
+ */
+public class LeaderboardSnapshots implements Runnable {
+
+    private final Plugin plugin;
+    private final MineUserManager userManager;
+    private final CategoryRegistry categoryRegistry;
+    private final int size;
+
+    private final AtomicReference<Map<String, LeaderboardSnapshot>> snapshots =
+            new AtomicReference<>(Collections.emptyMap());
+
+    private volatile long publishedAt;
+    private BukkitTask task;
+
+    /**
+     * @param size the amount of users kept per leaderboard
+     */
+    public LeaderboardSnapshots(Plugin plugin, MineUserManager userManager, CategoryRegistry categoryRegistry, int size) {
+        this.plugin = plugin;
+        this.userManager = userManager;
+        this.categoryRegistry = categoryRegistry;
+        this.size = Math.max(1, size);
+    }
+
+    public void start(long intervalSeconds) {
+        long ticks = Math.max(1, intervalSeconds) * 20L;
+        task = Bukkit.getScheduler().runTaskTimerAsynchronously(plugin, this, 0, ticks);
+    }
+
+    public void stop() {
+        if (task != null) {
+            task.cancel();
+            task = null;
+        }
+    }
+
+    /**
+     * Get the latest snapshot of the leaderboard, computing it
+     * right away when none was published yet.
+     *
+     * @param category the category
+     * @param window   the window, or null for the lifetime totals
+     * @return the snapshot
+     */
+    public LeaderboardSnapshot get(BlockCategory category, @Nullable TimeWindow window) {
+        LeaderboardSnapshot snapshot = snapshots.get().get(key(category, window));
+        return snapshot != null ? snapshot : create(category, window, format(category, window));
+    }
+
+    /**
+     * Get a page of the leaderboard, sliced from the latest snapshot when it
+     * holds the whole page, read from the live rankings otherwise.
+     *
+     * @param category the category
+     * @param window   the window, or null for the lifetime totals
+     * @param from     the first position, starting at 0
+     * @param limit    the maximum amount of users
+     * @return the snapshot of the page
+     */
+    public LeaderboardSnapshot getPage(BlockCategory category, @Nullable TimeWindow window, int from, int limit) {
+        LeaderboardSnapshot snapshot = snapshots.get().get(key(category, window));
+        if (snapshot != null && from + limit <= snapshot.size()) {
+            return snapshot.slice(from, limit);
+        }
+
+        return LeaderboardSnapshot.of(window == null
+                ? userManager.getIndex().getRange(category, from, limit)
+                : userManager.getWindows().getRange(window, category, from, limit), format(category, window));
+    }
+
+    /**
+     * Get the version of a page of the leaderboard, changed whenever
+     * {@link #getPage} may return something else.
+     *
+     * @param category the category
+     * @param window   the window, or null for the lifetime totals
+     * @param from     the first position, starting at 0
+     * @param limit    the maximum amount of users
+     * @return the version
+     */
+    public long getVersion(BlockCategory category, @Nullable TimeWindow window, int from, int limit) {
+        LeaderboardSnapshot snapshot = snapshots.get().get(key(category, window));
+        if (snapshot != null && from + limit <= snapshot.size()) {
+            return snapshot.getVersion();
+        }
+
+        return getRankingVersion(category, window);
+    }
+
+    /**
+     * Get the amount of users in the leaderboard.
+     *
+     * @param category the category
+     * @param window   the window, or null for the lifetime totals
+     * @return the amount of users
+     */
+    public int getRankedCount(BlockCategory category, @Nullable TimeWindow window) {
+        return window == null
+                ? userManager.getIndex().getRankedCount(category)
+                : userManager.getWindows().getRankedCount(window, category);
+    }
+
+    /**
+     * Get the age of the published snapshots.
+     *
+     * @return the milliseconds since they were published, or -1 if never
+     */
+    public long getAgeMillis() {
+        return publishedAt == 0 ? -1 : System.currentTimeMillis() - publishedAt;
+    }
+
+    @Override
+    public void run() {
+        if (userManager.isWarming()) return;
+
+        boolean windows = userManager.getWindows().isEnabled();
+
+        Map<String, LeaderboardSnapshot> previous = snapshots.get();
+        Map<String, LeaderboardSnapshot> created = new HashMap<>();
+        for (BlockCategory category : categoryRegistry.getCategories()) {
+            publish(previous, created, category, null);
+            if (!windows) continue;
+
+            for (TimeWindow window : TimeWindow.values()) {
+                publish(previous, created, category, window);
+            }
+        }
+
+        snapshots.set(Collections.unmodifiableMap(created));
+        publishedAt = System.currentTimeMillis();
+    }
+
+    /**
+     * Keep the previous snapshot of the leaderboard while its ranking did not
+     * change, so the pages sliced from it keep their version.
+     */
+    private void publish(Map<String, LeaderboardSnapshot> previous, Map<String, LeaderboardSnapshot> created,
+                         BlockCategory category, @Nullable TimeWindow window) {
+        String key = key(category, window);
+
+        LeaderboardSnapshot snapshot = previous.get(key);
+        if (snapshot == null || snapshot.getVersion() != getRankingVersion(category, window)) {
+            snapshot = create(category, window, format(category, window));
+        }
+        created.put(key, snapshot);
+    }
+
+    private LeaderboardSnapshot create(BlockCategory category, @Nullable TimeWindow window, DecimalFormat format) {
+        // Read first, an update racing the read only makes the next run take it again.
+        long version = getRankingVersion(category, window);
+
+        return LeaderboardSnapshot.of(window == null
+                ? userManager.getTop(category, size)
+                : userManager.getWindows().getTop(window, category, size), format, version);
+    }
+
+    private long getRankingVersion(BlockCategory category, @Nullable TimeWindow window) {
+        return window == null
+                ? userManager.getIndex().getVersion(category)
+                : userManager.getWindows().getVersion(window, category);
+    }
+
+    /**
+     * Get the format of the scores, marking the estimates of approximate categories.
+     */
+    private DecimalFormat format(BlockCategory category, @Nullable TimeWindow window) {
+        boolean approximate = window == null && userManager.getIndex().isApproximate(category);
+        return new DecimalFormat(approximate ? "~#,##0.#" : "#,##0.#");
+    }
+
+    private static String key(BlockCategory category, @Nullable TimeWindow window) {
+        return window == null ? category.getId() : category.getId() + ":" + window.getId();
+    }
+}
@@ -0,0 +1,215 @@
+package com.jaoow.blockstop.manager;
+
+import com.jaoow.blockstop.dao.UserDao;
+import com.jaoow.blockstop.model.MineUser;
+import com.jaoow.blockstop.utils.Pair;
+import org.bukkit.Bukkit;
+import org.bukkit.Material;
+import org.bukkit.plugin.Plugin;
+import org.bukkit.scheduler.BukkitTask;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+
+/**
+ * Leaderboards of single materials, built on demand.
+ * <p>
+ * A board is built in background the first time it is requested, from the
+ * stored amounts overlaid with the resident users, and kept up to date as
+ * blocks are counted from then on. Boards nobody looked at for the idle
+ * time are dropped and built again on the next request.
+ */
+public class MaterialLeaderboards implements Runnable {
+
+    private final Plugin plugin;
+    private final UserDao userDao;
+    private final MineUserManager userManager;
+
+    private final Map<Material, Board> boards = new ConcurrentHashMap<>();
+
+    private long idleMillis;
+    private BukkitTask task;
+
+    public MaterialLeaderboards(Plugin plugin, UserDao userDao, MineUserManager userManager) {
+        this.plugin = plugin;
+        this.userDao = userDao;
+        this.userManager = userManager;
+    }
+
+    /**
+     * Start dropping idle boards.
+     *
+     * @param idleSeconds     seconds a board is kept since it was last requested
+     * @param intervalSeconds the seconds between each check
+     */
+    public void start(long idleSeconds, long intervalSeconds) {
+        this.idleMillis = TimeUnit.SECONDS.toMillis(Math.max(0, idleSeconds));
+
+        long ticks = Math.max(1, intervalSeconds) * 20L;
+        task = Bukkit.getScheduler().runTaskTimerAsynchronously(plugin, this, ticks, ticks);
+    }
+
+    public void stop() {
+        if (task != null) {
+            task.cancel();
+            task = null;
+        }
+    }
+
+    /**
+     * Request the board of the material, building it in background when absent.
+     *
+     * @param material the material
+     * @return the future completed on the main thread once the board is ready
+     */
+    public CompletableFuture<Void> request(Material material) {
+        Board board = boards.computeIfAbsent(material, this::build);
+        board.lastAccess = System.currentTimeMillis();
+        return board.ready;
+    }
+
+    /**
+     * Check if the board of the material is built or being built.
+     *
+     * @param material the material
+     * @return true if requesting it starts no build
+     */
+    public boolean isRequested(Material material) {
+        return boards.containsKey(material);
+    }
+
+    /**
+     * Get the best users of the material, highest amount first.
+     *
+     * @param material the material
+     * @param limit    the maximum amount of users
+     * @return the users and their amounts, empty while the board is not ready
+     */
+    public List<Pair<UUID, Long>> getTop(Material material, int limit) {
+        return getRange(material, 0, limit);
+    }
+
+    /**
+     * Get the users of the material from the given position on, highest amount first.
+     *
+     * @param material the material
+     * @param from     the first position, starting at 0
+     * @param limit    the maximum amount of users
+     * @return the users and their amounts, empty while the board is not ready
+     */
+    public List<Pair<UUID, Long>> getRange(Material material, int from, int limit) {
+        Board board = boards.get(material);
+        if (board == null || !board.ready.isDone() || limit <= 0) return new ArrayList<>();
+
+        board.lastAccess = System.currentTimeMillis();
+        return board.ranking.range(from, limit);
+    }
+
+    /**
+     * Get the amount of users in the board of the material.
+     *
+     * @param material the material
+     * @return the amount of users, zero while the board is not ready
+     */
+    public int getRankedCount(Material material) {
+        Board board = boards.get(material);
+        return board == null || !board.ready.isDone() ? 0 : board.ranking.size();
+    }
+
+    /**
+     * Get the version of the board of the material, changed by every update.
+     * Menus showing the board check it, so it also keeps the board from being dropped.
+     *
+     * @param material the material
+     * @return the version, zero while the board is not ready
+     */
+    public long getVersion(Material material) {
+        Board board = boards.get(material);
+        if (board == null || !board.ready.isDone()) return 0;
+
+        board.lastAccess = System.currentTimeMillis();
+        return board.ranking.getVersion();
+    }
+
+    /**
+     * Move the user in the board of the material, if built.
+     * Must be called on the main thread after its amount changed.
+     *
+     * @param user     the user
+     * @param material the material
+     */
+    public void update(MineUser user, Material material) {
+        Board board = boards.get(material);
+
+        // Boards being built read the resident users once done.
+        if (board != null && board.ready.isDone()) {
+            board.put(user.getUniqueId(), user.getAmount(material));
+        }
+    }
+
+    public int size() {
+        return boards.size();
+    }
+
+    @Override
+    public void run() {
+        long now = System.currentTimeMillis();
+        boards.forEach((material, board) -> {
+            if (board.ready.isDone() && now - board.lastAccess >= idleMillis) {
+                boards.remove(material, board);
+            }
+        });
+    }
+
+    private Board build(Material material) {
+        Board board = new Board();
+
+        Bukkit.getScheduler().runTaskAsynchronously(plugin, () -> {
+            Map<UUID, Long> stored;
+            try {
+                stored = userDao.selectMaterialAmounts(material);
+            } catch (Exception e) {
+                plugin.getLogger().log(Level.WARNING, "Failed to build the leaderboard of " + material, e);
+                boards.remove(material, board);
+                board.ready.completeExceptionally(e);
+                return;
+            }
+
+            // Resident users may have blocks not saved yet, their amounts win.
+            Bukkit.getScheduler().runTask(plugin, () -> {
+                stored.forEach(board::put);
+                for (MineUser user : userManager.getUsers()) {
+                    board.put(user.getUniqueId(), user.getAmount(material));
+                }
+                board.ready.complete(null);
+            });
+        });
+
+        return board;
+    }
+
+    private static final class Board {
+
+        // Only touched on the main thread.
+        private final Map<UUID, Long> scores = new HashMap<>();
+        private final ScoreRanking ranking = new ScoreRanking();
+
+        private final CompletableFuture<Void> ready = new CompletableFuture<>();
+        private volatile long lastAccess = System.currentTimeMillis();
+
+        private void put(UUID uuid, long score) {
+            Long previous = score > 0 ? scores.put(uuid, score) : scores.remove(uuid);
+            if (previous != null && previous == score) return;
+
+            if (previous != null) ranking.remove(uuid, previous);
+            if (score > 0) ranking.insert(uuid, score);
+        }
+    }
+}
@@ -2,23 +2,103 @@ package com.jaoow.blockstop.manager;
 
 import com.google.common.collect.Lists;
 import com.jaoow.blockstop.dao.UserDao;
+import com.jaoow.blockstop.dao.UserWriteBehind;
+import com.jaoow.blockstop.model.BlockCategory;
+import com.jaoow.blockstop.model.MaterialCounter;
 import com.jaoow.blockstop.model.MineUser;
+import com.jaoow.blockstop.utils.Pair;
+import lombok.Getter;
+import org.bukkit.Bukkit;
+import org.bukkit.Material;
+import org.bukkit.plugin.Plugin;
+import org.bukkit.scheduler.BukkitTask;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.Optional;
+import java.util.Queue;
+import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
 
 public class MineUserManager {
 
+    private static final long RETRY_MIN_MILLIS = TimeUnit.SECONDS.toMillis(5);
+    private static final long RETRY_MAX_MILLIS = TimeUnit.MINUTES.toMillis(5);
+
+    private final Plugin plugin;
     private final UserDao userDao;
+    private final UserWriteBehind writeBehind;
+    @Getter
+    private final WindowLeaderboards windows;
+    private final CategoryRegistry categoryRegistry;
+    private final boolean lazyLoad;
+
     private final Map<UUID, MineUser> players = new ConcurrentHashMap<>();
 
-    public MineUserManager(UserDao userDao) {
+    @Getter
+    private final LeaderboardIndex index;
+    @Getter
+    private final MaterialLeaderboards materialBoards;
+
+    // Users being read from the database.
+    private final Map<UUID, CompletableFuture<MineUser>> loading = new ConcurrentHashMap<>();
+
+    // Players currently connected, their users are never evicted.
+    private final Set<UUID> online = ConcurrentHashMap.newKeySet();
+
+    // Blocks broken before the user finished loading, only touched on the main thread.
+    private final Map<UUID, MaterialCounter> pending = new HashMap<>();
+
+    // Online users whose load failed, retried with backoff by the retry task, only touched on the main thread.
+    private final Map<UUID, Retry> retries = new HashMap<>();
+    private BukkitTask retryTask;
+
+    // Completed on the main thread once the startup load finished.
+    private final CompletableFuture<Void> warmup = new CompletableFuture<>();
+
+    /**
+     * If the startup load is still running, breaks are buffered meanwhile.
+     */
+    @Getter
+    private volatile boolean warming;
+
+    /**
+     * @param lazyLoad if only the totals are read on startup, users
+     *                 being loaded when they join
+     */
+    public MineUserManager(Plugin plugin, UserDao userDao, UserWriteBehind writeBehind, WindowLeaderboards windows,
+                           CategoryRegistry categoryRegistry, boolean lazyLoad) {
+        this.plugin = plugin;
         this.userDao = userDao;
+        this.writeBehind = writeBehind;
+        this.windows = windows;
+        this.categoryRegistry = categoryRegistry;
+        this.lazyLoad = lazyLoad;
+        this.index = new LeaderboardIndex(categoryRegistry.getCategoryArray());
+        this.materialBoards = new MaterialLeaderboards(plugin, userDao, this);
+    }
+
+    /**
+     * Start retrying the loads that failed.
+     */
+    public void start() {
+        retryTask = Bukkit.getScheduler().runTaskTimer(plugin, this::retryLoads, 20L, 20L);
+    }
+
+    public void stop() {
+        if (retryTask != null) {
+            retryTask.cancel();
+            retryTask = null;
+        }
     }
 
     public List<MineUser> getUsers() {
@@ -27,21 +107,315 @@ public class MineUserManager {
 
     public void loadUser(MineUser timedPlayer) {
         this.players.put(timedPlayer.getUniqueId(), timedPlayer);
+        this.index.track(timedPlayer);
     }
 
-    @NotNull
-    public MineUser getOrCreate(UUID uuid) {
-        return Optional.ofNullable(players.get(uuid)).orElseGet(() -> {
-            MineUser mineUser = userDao.selectOne(uuid);
+    /**
+     * Run {@link #loadAll(ForkJoinPool)} in background, rows being read by one
+     * thread and decoded in parallel. The manager is warming until it finishes:
+     * blocks broken meanwhile are buffered and users are only loaded afterwards.
+     *
+     * @param parallelism the amount of decoding threads
+     * @return the future completed on the main thread once ready
+     */
+    public CompletableFuture<Void> loadAllAsync(int parallelism) {
+        warming = true;
+        long start = System.currentTimeMillis();
+
+        Bukkit.getScheduler().runTaskAsynchronously(plugin, () -> {
+            ForkJoinPool decoder = new ForkJoinPool(Math.max(1, parallelism));
+            try {
+                loadAll(decoder);
+            } catch (Exception e) {
+                plugin.getLogger().log(Level.SEVERE, "Failed to load users", e);
+                Bukkit.getScheduler().runTask(plugin, () -> warmup.completeExceptionally(e));
+                return;
+            } finally {
+                decoder.shutdown();
+            }
+
+            Bukkit.getScheduler().runTask(plugin, () -> {
+                finishWarmup();
+                plugin.getLogger().info("Loaded " + index.size() + " users in " + (System.currentTimeMillis() - start) + "ms.");
+            });
+        });
+
+        return warmup;
+    }
+
+    /**
+     * Fill the leaderboard index on startup. Every user is loaded unless
+     * lazy loading is enabled, in which case only the stored totals are read.
+     *
+     * @param decoder the pool decoding rows, or null to decode on the calling thread
+     */
+    public void loadAll(@Nullable ForkJoinPool decoder) {
+        windows.load();
+        loadIndex(decoder);
 
+        // The approximate categories start from the exact totals just loaded.
+        index.seedApproximations();
+    }
+
+    private void loadIndex(@Nullable ForkJoinPool decoder) {
+        if (!lazyLoad) {
+            userDao.forEachUser(this::loadUser, decoder);
+            return;
+        }
+
+        Map<UUID, long[]> totals = userDao.selectTotals(categoryRegistry.getCategoryArray());
+        if (totals != null) {
+            totals.forEach(index::put);
+            return;
+        }
+
+        // Some category was never stored, rebuild the totals from the full data once.
+        plugin.getLogger().info("Rebuilding category totals...");
+        Queue<MineUser> users = new ConcurrentLinkedQueue<>();
+        userDao.forEachUser(mineUser -> {
+            index.put(mineUser.getUniqueId(), mineUser.getTotals());
+            users.add(mineUser);
+        }, decoder);
+        userDao.saveTotals(users);
+    }
+
+    /**
+     * Merge the blocks broken while warming and load the online players,
+     * switching to ready within the same tick.
+     */
+    private void finishWarmup() {
+        warming = false;
+
+        for (UUID uuid : new ArrayList<>(pending.keySet())) {
+            MineUser mineUser = players.get(uuid);
+
+            // Absent users merge their pending blocks once loaded.
             if (mineUser == null) {
-                mineUser = new MineUser(uuid);
-                userDao.saveOne(mineUser);
+                loadOrCreate(uuid);
+                continue;
+            }
+
+            merge(mineUser, pending.remove(uuid));
+            writeBehind.markDirty(mineUser);
+        }
+
+        for (UUID uuid : online) {
+            loadOrCreate(uuid);
+        }
+
+        warmup.complete(null);
+    }
+
+    /**
+     * Count a broken block for the user. When the user is still loading the block
+     * is kept in a pending buffer and merged once the load completes, so this
+     * never reaches the database.
+     *
+     * @param uuid     the user id
+     * @param material the broken material
+     */
+    public void addMaterial(UUID uuid, Material material) {
+        MineUser mineUser = players.get(uuid);
+        if (mineUser != null) {
+            mineUser.addMaterial(material);
+            index.track(mineUser);
+            index.record(uuid, material, 1);
+            materialBoards.update(mineUser, material);
+            windows.record(uuid, material, 1);
+            writeBehind.markDirty(mineUser);
+            return;
+        }
+
+        pending.computeIfAbsent(uuid, id -> new MaterialCounter()).increment(material);
+
+        // Failed loads are retried by the retry task, not on every break.
+        if (!warming && !retries.containsKey(uuid)) loadOrCreate(uuid);
+    }
+
+    /**
+     * Get the user from cache or load it asynchronously from the database,
+     * creating it when absent. The returned future completes on the main thread.
+     * <p>
+     * While warming the user may still be read by the startup load,
+     * so this waits for it to finish.
+     *
+     * @param uuid the user id
+     * @return the future of the user
+     */
+    @NotNull
+    public CompletableFuture<MineUser> loadOrCreate(UUID uuid) {
+        if (warming) {
+            return warmup.thenCompose(ignored -> loadOrCreate(uuid));
+        }
+
+        MineUser cached = players.get(uuid);
+        if (cached != null) {
+            cached.touch();
+            return CompletableFuture.completedFuture(cached);
+        }
+
+        return loading.computeIfAbsent(uuid, id -> {
+            CompletableFuture<MineUser> future = new CompletableFuture<>();
+
+            Bukkit.getScheduler().runTaskAsynchronously(plugin, () -> {
+                MineUser mineUser;
+                try {
+                    mineUser = userDao.selectOne(id);
+
+                    // New users are written by the write-behind once they break something.
+                    if (mineUser == null) {
+                        mineUser = new MineUser(id, categoryRegistry.getCategoryArray());
+                    }
+                } catch (Exception e) {
+                    plugin.getLogger().log(Level.WARNING, "Failed to load user " + id, e);
+                    Bukkit.getScheduler().runTask(plugin, () -> fail(id, future, e));
+                    return;
+                }
+
+                MineUser loaded = mineUser;
+                Bukkit.getScheduler().runTask(plugin, () -> complete(loaded, future));
+            });
+
+            return future;
+        });
+    }
+
+    private void complete(MineUser loaded, CompletableFuture<MineUser> future) {
+        UUID uuid = loaded.getUniqueId();
+
+        // Another path may have loaded the user meanwhile, keep that instance.
+        MineUser mineUser = players.getOrDefault(uuid, loaded);
+
+        MaterialCounter delta = pending.remove(uuid);
+        if (delta != null) {
+            merge(mineUser, delta);
+        }
+
+        players.put(uuid, mineUser);
+        index.track(mineUser);
+
+        if (mineUser.hasUnsaved()) {
+            writeBehind.markDirty(mineUser);
+        }
+
+        loading.remove(uuid);
+        retries.remove(uuid);
+        future.complete(mineUser);
+    }
+
+    /**
+     * Retry the load later while the player is online, or drop the blocks
+     * it broke meanwhile once it left, as they have no user to be saved with.
+     */
+    private void fail(UUID uuid, CompletableFuture<MineUser> future, Exception e) {
+        loading.remove(uuid);
+
+        if (online.contains(uuid)) {
+            retries.computeIfAbsent(uuid, id -> new Retry()).schedule();
+        } else {
+            retries.remove(uuid);
+
+            MaterialCounter dropped = pending.remove(uuid);
+            if (dropped != null) {
+                plugin.getLogger().warning("Dropped " + dropped.total() + " blocks broken by " + uuid + ", the user could not be loaded before leaving.");
+            }
+        }
+
+        future.completeExceptionally(e);
+    }
+
+    private void retryLoads() {
+        if (warming || retries.isEmpty()) return;
+
+        long now = System.currentTimeMillis();
+        for (Map.Entry<UUID, Retry> entry : new ArrayList<>(retries.entrySet())) {
+            if (now >= entry.getValue().nextAttempt && !loading.containsKey(entry.getKey())) {
+                loadOrCreate(entry.getKey());
             }
+        }
+    }
 
-            this.players.put(uuid, mineUser);
-            return mineUser;
+    private void merge(MineUser mineUser, MaterialCounter delta) {
+        delta.forEach((material, amount) -> {
+            mineUser.addMaterial(material, amount);
+            index.record(mineUser.getUniqueId(), material, amount);
+            materialBoards.update(mineUser, material);
+            windows.record(mineUser.getUniqueId(), material, amount);
         });
+        index.track(mineUser);
+    }
+
+    /**
+     * Load the user of a player that joined.
+     *
+     * @param uuid the user id
+     */
+    public void handleJoin(UUID uuid) {
+        online.add(uuid);
+        if (!warming) loadOrCreate(uuid);
+    }
+
+    /**
+     * Save the user in background when the player leaves,
+     * it becomes eligible for eviction from now on.
+     *
+     * @param uuid the user id
+     */
+    public void handleQuit(UUID uuid) {
+        online.remove(uuid);
+
+        MineUser mineUser = players.get(uuid);
+        if (mineUser == null) {
+            // A user waiting for a retry gets one last attempt to save its blocks, dropped if it fails.
+            if (retries.remove(uuid) != null && pending.containsKey(uuid)) loadOrCreate(uuid);
+            return;
+        }
+
+        mineUser.touch();
+        writeBehind.saveAsync(mineUser);
+    }
+
+    public boolean isOnline(UUID uuid) {
+        return online.contains(uuid);
+    }
+
+    /**
+     * Remove a clean offline user from memory, its totals stay in the index.
+     *
+     * @param mineUser the user
+     * @return true if the user was evicted
+     */
+    public boolean evict(MineUser mineUser) {
+        UUID uuid = mineUser.getUniqueId();
+        if (online.contains(uuid) || mineUser.isDirty()) return false;
+
+        return players.remove(uuid, mineUser);
+    }
+
+    public int getResidentCount() {
+        return players.size();
+    }
+
+    /**
+     * Get the best users of the category, highest score first.
+     *
+     * @param category the category
+     * @param limit    the maximum amount of users
+     * @return the users and their scores
+     */
+    public List<Pair<UUID, Long>> getTop(BlockCategory category, int limit) {
+        return index.getTop(category, limit);
+    }
+
+    /**
+     * Get the position of the user in the category, without loading it.
+     *
+     * @param uuid     the user id
+     * @param category the category
+     * @return the position starting at 1, or -1 if the user has no blocks in the category
+     */
+    public int getRank(UUID uuid, BlockCategory category) {
+        return index.getRank(uuid, category);
     }
 
     @Nullable
@@ -49,4 +423,17 @@ public class MineUserManager {
         return players.get(uuid);
     }
 
+    private static final class Retry {
+
+        private long delay;
+        private long nextAttempt;
+
+        /**
+         * Schedule the next attempt, doubling the delay up to the maximum.
+         */
+        private void schedule() {
+            delay = delay == 0 ? RETRY_MIN_MILLIS : Math.min(RETRY_MAX_MILLIS, delay * 2);
+            nextAttempt = System.currentTimeMillis() + delay;
+        }
+    }
 }
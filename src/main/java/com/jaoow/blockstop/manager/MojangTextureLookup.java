@@ -0,0 +1,60 @@
+package com.jaoow.blockstop.manager;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.jaoow.blockstop.model.SkullTextures;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.UUID;
+
+/**
+ * Textures read from the Mojang session service.
+ */
+public class MojangTextureLookup implements TextureLookup {
+
+    private static final String PROFILE_URL = "https://sessionserver.mojang.com/session/minecraft/profile/%s?unsigned=false";
+    private static final int TIMEOUT_MILLIS = 5000;
+
+    @Nullable
+    @Override
+    public SkullTextures lookup(UUID uuid) throws IOException {
+        URL url = new URL(String.format(PROFILE_URL, uuid.toString().replace("-", "")));
+
+        HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+        connection.setConnectTimeout(TIMEOUT_MILLIS);
+        connection.setReadTimeout(TIMEOUT_MILLIS);
+
+        try {
+            int status = connection.getResponseCode();
+            // No content for unknown profiles, such as offline mode users.
+            if (status == HttpURLConnection.HTTP_NO_CONTENT || status == HttpURLConnection.HTTP_NOT_FOUND) return null;
+            if (status != HttpURLConnection.HTTP_OK) throw new IOException("Session service answered " + status + " for " + uuid);
+
+            try (Reader reader = new InputStreamReader(connection.getInputStream(), StandardCharsets.UTF_8)) {
+                JsonObject profile = new JsonParser().parse(reader).getAsJsonObject();
+                JsonArray properties = profile.getAsJsonArray("properties");
+                if (properties == null) return null;
+
+                for (JsonElement element : properties) {
+                    JsonObject property = element.getAsJsonObject();
+                    if (!"textures".equals(property.get("name").getAsString())) continue;
+
+                    JsonElement signature = property.get("signature");
+                    return new SkullTextures(property.get("value").getAsString(),
+                            signature == null ? null : signature.getAsString());
+                }
+                return null;
+            }
+        } finally {
+            connection.disconnect();
+        }
+    }
+}
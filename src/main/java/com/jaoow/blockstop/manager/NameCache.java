@@ -0,0 +1,133 @@
+package com.jaoow.blockstop.manager;
+
+import com.jaoow.blockstop.dao.UserDao;
+import org.bukkit.Bukkit;
+import org.bukkit.plugin.Plugin;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Level;
+
+/**
+ * Names of the users, so rendering never looks a player up on the main thread.
+ * <p>
+ * Names are learned when players join and stored with the users. Unknown
+ * names are read in background, from the database first and from the server
+ * otherwise, and a placeholder is shown until they arrive.
+ */
+public class NameCache {
+
+    private final Plugin plugin;
+    private final UserDao userDao;
+    private final String placeholder;
+
+    private final Map<UUID, String> names = new ConcurrentHashMap<>();
+
+    // Users by their lower case name.
+    private final Map<String, UUID> ids = new ConcurrentHashMap<>();
+
+    // Users being resolved, or whose name could not be found until they join.
+    private final Set<UUID> pending = ConcurrentHashMap.newKeySet();
+
+    /**
+     * @param placeholder the name shown while the real one is resolved
+     */
+    public NameCache(Plugin plugin, UserDao userDao, String placeholder) {
+        this.plugin = plugin;
+        this.userDao = userDao;
+        this.placeholder = placeholder;
+    }
+
+    /**
+     * Learn the name of a player that joined, storing it in background if it changed.
+     *
+     * @param uuid the user id
+     * @param name the name
+     */
+    public void handleJoin(UUID uuid, String name) {
+        pending.remove(uuid);
+
+        String previous = names.put(uuid, name);
+        if (name.equals(previous)) return;
+
+        if (previous != null) ids.remove(key(previous), uuid);
+        ids.put(key(name), uuid);
+
+        Bukkit.getScheduler().runTaskAsynchronously(plugin, () -> {
+            try {
+                userDao.saveName(uuid, name);
+            } catch (Exception e) {
+                plugin.getLogger().log(Level.WARNING, "Failed to save the name of " + uuid, e);
+            }
+        });
+    }
+
+    /**
+     * Get the name of the user, resolving it in background when unknown.
+     *
+     * @param uuid the user id
+     * @return the name, or the placeholder while it is resolved
+     */
+    public String getName(UUID uuid) {
+        String name = getIfPresent(uuid);
+        return name != null ? name : placeholder;
+    }
+
+    /**
+     * Get the name of the user, resolving it in background when unknown.
+     *
+     * @param uuid the user id
+     * @return the name, or null while it is resolved
+     */
+    @Nullable
+    public String getIfPresent(UUID uuid) {
+        String name = names.get(uuid);
+        if (name == null && pending.add(uuid)) resolve(uuid);
+        return name;
+    }
+
+    /**
+     * Find a user by its cached name, ignoring case.
+     *
+     * @param name the name
+     * @return the user id, empty if no known user has the name
+     */
+    public Optional<UUID> findUniqueId(String name) {
+        return Optional.ofNullable(ids.get(key(name)));
+    }
+
+    public int size() {
+        return names.size();
+    }
+
+    private void resolve(UUID uuid) {
+        Bukkit.getScheduler().runTaskAsynchronously(plugin, () -> {
+            try {
+                String name = userDao.selectName(uuid);
+                if (name == null) {
+                    // May read the player data from disk, never done on the main thread.
+                    name = Bukkit.getOfflinePlayer(uuid).getName();
+                    if (name != null) userDao.saveName(uuid, name);
+                }
+
+                // Names not found stay pending, the player joining fills them.
+                if (name != null) {
+                    if (names.putIfAbsent(uuid, name) == null) ids.putIfAbsent(key(name), uuid);
+                    pending.remove(uuid);
+                }
+            } catch (Exception e) {
+                plugin.getLogger().log(Level.WARNING, "Failed to resolve the name of " + uuid, e);
+                pending.remove(uuid);
+            }
+        });
+    }
+
+    private static String key(String name) {
+        return name.toLowerCase(Locale.ROOT);
+    }
+}
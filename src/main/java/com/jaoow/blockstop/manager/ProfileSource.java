@@ -0,0 +1,24 @@
+package com.jaoow.blockstop.manager;
+
+import org.bukkit.inventory.meta.SkullMeta;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.UUID;
+
+/**
+ * Source of the skull metadata of the users, see {@link SkullCache}.
+ */
+@FunctionalInterface
+public interface ProfileSource {
+
+    /**
+     * Create the skull metadata of the user, with its profile resolved.
+     * Called off the main thread, so it may block on lookups.
+     *
+     * @param uuid the user id
+     * @param name the name of the user
+     * @return the metadata, or null if the profile could not be resolved
+     */
+    @Nullable
+    SkullMeta resolve(UUID uuid, String name);
+}
@@ -0,0 +1,238 @@
+package com.jaoow.blockstop.manager;
+
+import com.jaoow.blockstop.utils.Pair;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Users of a single leaderboard ordered by score, highest first.
+ * <p>
+ * Backed by a treap keyed by (score, uuid), so updates take O(log n) and
+ * the top N entries are read in O(N + log n) without touching the others.
+ * Nodes also keep the size of their subtree, giving ranks in O(log n).
+ */
+class ScoreRanking {
+
+    // Shared by every ranking, so a ranking rebuilt from scratch never repeats a version.
+    private static final AtomicLong VERSIONS = new AtomicLong();
+
+    private Node root;
+    private volatile long version = nextVersion();
+
+    /**
+     * Add the entry, the caller guarantees it is not present yet.
+     *
+     * @param uuid  the user id
+     * @param score the score
+     */
+    synchronized void insert(UUID uuid, long score) {
+        root = insert(root, new Node(uuid, score));
+        version = nextVersion();
+    }
+
+    /**
+     * Remove the entry.
+     *
+     * @param uuid  the user id
+     * @param score the score it was inserted with
+     */
+    synchronized void remove(UUID uuid, long score) {
+        root = remove(root, uuid, score);
+        version = nextVersion();
+    }
+
+    /**
+     * Get the best entries, highest score first.
+     *
+     * @param limit the maximum amount of entries
+     * @return the users and their scores
+     */
+    List<Pair<UUID, Long>> top(int limit) {
+        return range(0, limit);
+    }
+
+    /**
+     * Get the entries from the given position on, highest score first.
+     * The first one is found through the subtree sizes, so this takes
+     * O(limit + log n) wherever the range starts.
+     *
+     * @param from  the first position, starting at 0
+     * @param limit the maximum amount of entries
+     * @return the users and their scores
+     */
+    synchronized List<Pair<UUID, Long>> range(int from, int limit) {
+        List<Pair<UUID, Long>> range = new ArrayList<>(Math.max(0, Math.min(limit, size(root) - from)));
+        if (from < 0 || limit <= 0) return range;
+
+        // Stack of the nodes still to visit in order, starting at the entry at the position.
+        Deque<Node> stack = new ArrayDeque<>();
+        Node node = root;
+        int skip = from;
+        while (node != null) {
+            int left = size(node.left);
+            if (skip < left) {
+                stack.push(node);
+                node = node.left;
+            } else if (skip == left) {
+                stack.push(node);
+                break;
+            } else {
+                skip -= left + 1;
+                node = node.right;
+            }
+        }
+
+        while (!stack.isEmpty() && range.size() < limit) {
+            node = stack.pop();
+            range.add(Pair.of(node.uuid, node.score));
+
+            for (Node next = node.right; next != null; next = next.left) {
+                stack.push(next);
+            }
+        }
+        return range;
+    }
+
+    /**
+     * Get the position of the entry, counting the entries
+     * ranked before it through the subtree sizes.
+     *
+     * @param uuid  the user id
+     * @param score the score it was inserted with
+     * @return the position starting at 1, or -1 if absent
+     */
+    synchronized int rank(UUID uuid, long score) {
+        int before = 0;
+
+        Node node = root;
+        while (node != null) {
+            int comparison = compare(uuid, score, node);
+            if (comparison < 0) {
+                node = node.left;
+            } else if (comparison > 0) {
+                before += size(node.left) + 1;
+                node = node.right;
+            } else {
+                return before + size(node.left) + 1;
+            }
+        }
+        return -1;
+    }
+
+    synchronized int size() {
+        return size(root);
+    }
+
+    /**
+     * Get the version of the ranking, changed by every update.
+     *
+     * @return the version
+     */
+    long getVersion() {
+        return version;
+    }
+
+    static long nextVersion() {
+        return VERSIONS.incrementAndGet();
+    }
+
+    private static Node insert(Node node, Node entry) {
+        if (node == null) return entry;
+
+        if (compare(entry.uuid, entry.score, node) < 0) {
+            node.left = insert(node.left, entry);
+            if (node.left.priority > node.priority) node = rotateRight(node);
+        } else {
+            node.right = insert(node.right, entry);
+            if (node.right.priority > node.priority) node = rotateLeft(node);
+        }
+
+        node.update();
+        return node;
+    }
+
+    private static Node remove(Node node, UUID uuid, long score) {
+        if (node == null) return null;
+
+        int comparison = compare(uuid, score, node);
+        if (comparison < 0) {
+            node.left = remove(node.left, uuid, score);
+        } else if (comparison > 0) {
+            node.right = remove(node.right, uuid, score);
+        } else {
+            return merge(node.left, node.right);
+        }
+
+        node.update();
+        return node;
+    }
+
+    private static Node merge(Node left, Node right) {
+        if (left == null) return right;
+        if (right == null) return left;
+
+        if (left.priority > right.priority) {
+            left.right = merge(left.right, right);
+            left.update();
+            return left;
+        }
+
+        right.left = merge(left, right.left);
+        right.update();
+        return right;
+    }
+
+    private static Node rotateRight(Node node) {
+        Node left = node.left;
+        node.left = left.right;
+        left.right = node;
+        node.update();
+        return left;
+    }
+
+    private static Node rotateLeft(Node node) {
+        Node right = node.right;
+        node.right = right.left;
+        right.left = node;
+        node.update();
+        return right;
+    }
+
+    /**
+     * Higher scores come first, ties are ordered by uuid.
+     */
+    private static int compare(UUID uuid, long score, Node node) {
+        if (score != node.score) return score > node.score ? -1 : 1;
+        return uuid.compareTo(node.uuid);
+    }
+
+    private static int size(Node node) {
+        return node == null ? 0 : node.size;
+    }
+
+    private static final class Node {
+
+        private final UUID uuid;
+        private final long score;
+        private final int priority = ThreadLocalRandom.current().nextInt();
+
+        private Node left;
+        private Node right;
+        private int size = 1;
+
+        private Node(UUID uuid, long score) {
+            this.uuid = uuid;
+            this.score = score;
+        }
+
+        private void update() {
+            size = 1 + size(left) + size(right);
+        }
+    }
+}
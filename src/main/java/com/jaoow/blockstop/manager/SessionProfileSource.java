@@ -0,0 +1,86 @@
+package com.jaoow.blockstop.manager;
+
+import com.jaoow.blockstop.model.SkullTextures;
+import com.jaoow.blockstop.utils.Utils;
+import org.bukkit.Bukkit;
+import org.bukkit.inventory.meta.ItemMeta;
+import org.bukkit.inventory.meta.SkullMeta;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.util.UUID;
+
+/**
+ * Profiles completed with their textures, so the server sends the skin
+ * right away instead of looking the profile up when the head is shown.
+ * <p>
+ * The textures come from the {@link TextureLookup} and are set on the
+ * skull through the game profile of the server, which has no API for it
+ * on every supported version.
+ */
+public class SessionProfileSource implements ProfileSource {
+
+    private static final String PROFILE_CLASS = "com.mojang.authlib.GameProfile";
+    private static final String PROPERTY_CLASS = "com.mojang.authlib.properties.Property";
+
+    private final TextureLookup lookup;
+
+    public SessionProfileSource(TextureLookup lookup) {
+        this.lookup = lookup;
+    }
+
+    @Nullable
+    @Override
+    public SkullMeta resolve(UUID uuid, String name) {
+        ItemMeta meta = Bukkit.getItemFactory().getItemMeta(Utils.HEAD_MATERIAL);
+        if (!(meta instanceof SkullMeta)) return null;
+
+        SkullTextures textures;
+        try {
+            textures = lookup.lookup(uuid);
+        } catch (IOException e) {
+            throw new IllegalStateException("Failed to look the textures of " + name + " up", e);
+        }
+        if (textures == null) return null;
+
+        try {
+            setProfile((SkullMeta) meta, createProfile(uuid, name, textures));
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Failed to set the profile of " + name, e);
+        }
+        return (SkullMeta) meta;
+    }
+
+    private static Object createProfile(UUID uuid, String name, SkullTextures textures) throws ReflectiveOperationException {
+        Class<?> profileClass = Class.forName(PROFILE_CLASS);
+        Object profile = profileClass.getConstructor(UUID.class, String.class).newInstance(uuid, name);
+
+        Constructor<?> propertyConstructor = Class.forName(PROPERTY_CLASS).getConstructor(String.class, String.class, String.class);
+        Object property = propertyConstructor.newInstance("textures", textures.getValue(), textures.getSignature());
+
+        Object properties = profileClass.getMethod("getProperties").invoke(profile);
+        properties.getClass().getMethod("put", Object.class, Object.class).invoke(properties, "textures", property);
+        return profile;
+    }
+
+    /**
+     * Set the profile on the skull, through its setter where it exists so
+     * the server also keeps it serialized, or the field otherwise.
+     */
+    private static void setProfile(SkullMeta meta, Object profile) throws ReflectiveOperationException {
+        Class<?> profileClass = Class.forName(PROFILE_CLASS);
+
+        try {
+            Method setter = meta.getClass().getDeclaredMethod("setProfile", profileClass);
+            setter.setAccessible(true);
+            setter.invoke(meta, profile);
+        } catch (NoSuchMethodException e) {
+            Field field = meta.getClass().getDeclaredField("profile");
+            field.setAccessible(true);
+            field.set(meta, profile);
+        }
+    }
+}
@@ -0,0 +1,131 @@
+package com.jaoow.blockstop.manager;
+
+import org.bukkit.Bukkit;
+import org.bukkit.inventory.meta.SkullMeta;
+import org.bukkit.plugin.Plugin;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Bounded cache of the skull metadata of the users.
+ * <p>
+ * Metadata is resolved in background by the {@link ProfileSource} when a
+ * player joins or first shows up in a leaderboard, so rendering a head only
+ * copies it and never waits for a profile lookup. The least recently used
+ * entries are dropped past the capacity, and profiles that could not be
+ * resolved are only tried again after a while.
+ */
+public class SkullCache {
+
+    private static final long RETRY_MILLIS = TimeUnit.MINUTES.toMillis(10);
+
+    private final Executor executor;
+    private final Logger logger;
+    private final ProfileSource source;
+    private final int capacity;
+
+    private final Map<UUID, SkullMeta> skulls;
+
+    // Users being resolved.
+    private final Set<UUID> pending = ConcurrentHashMap.newKeySet();
+
+    // Users whose profile could not be resolved, not retried before a while.
+    private final Map<UUID, Long> failures = new ConcurrentHashMap<>();
+
+    /**
+     * @param source   the source of the metadata
+     * @param capacity the maximum amount of users kept
+     */
+    public SkullCache(Plugin plugin, ProfileSource source, int capacity) {
+        this(task -> Bukkit.getScheduler().runTaskAsynchronously(plugin, task), plugin.getLogger(), source, capacity);
+    }
+
+    /**
+     * @param executor the executor resolving the metadata in background
+     * @param logger   the logger of the failed lookups
+     * @param source   the source of the metadata
+     * @param capacity the maximum amount of users kept
+     */
+    public SkullCache(Executor executor, Logger logger, ProfileSource source, int capacity) {
+        this.executor = executor;
+        this.logger = logger;
+        this.source = source;
+        this.capacity = Math.max(1, capacity);
+        this.skulls = new LinkedHashMap<UUID, SkullMeta>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<UUID, SkullMeta> eldest) {
+                return size() > SkullCache.this.capacity;
+            }
+        };
+    }
+
+    /**
+     * Get the skull metadata of the user, resolving it in background when absent.
+     *
+     * @param uuid the user id
+     * @param name the name of the user
+     * @return a copy of the metadata, or null while it is resolved
+     */
+    @Nullable
+    public SkullMeta get(UUID uuid, String name) {
+        SkullMeta meta;
+        synchronized (skulls) {
+            meta = skulls.get(uuid);
+        }
+
+        if (meta == null) {
+            request(uuid, name);
+            return null;
+        }
+        return meta.clone();
+    }
+
+    /**
+     * Resolve the skull metadata of the user in background, unless cached.
+     *
+     * @param uuid the user id
+     * @param name the name of the user
+     */
+    public void request(UUID uuid, String name) {
+        synchronized (skulls) {
+            if (skulls.containsKey(uuid)) return;
+        }
+        Long failedAt = failures.get(uuid);
+        if (failedAt != null && System.currentTimeMillis() - failedAt < RETRY_MILLIS) return;
+        if (!pending.add(uuid)) return;
+
+        executor.execute(() -> {
+            try {
+                SkullMeta meta = source.resolve(uuid, name);
+                if (meta != null) {
+                    synchronized (skulls) {
+                        skulls.put(uuid, meta);
+                    }
+                    failures.remove(uuid);
+                } else {
+                    failures.put(uuid, System.currentTimeMillis());
+                }
+            } catch (Exception e) {
+                logger.log(Level.WARNING, "Failed to resolve the skull of " + name, e);
+                failures.put(uuid, System.currentTimeMillis());
+            } finally {
+                pending.remove(uuid);
+            }
+        });
+    }
+
+    public int size() {
+        synchronized (skulls) {
+            return skulls.size();
+        }
+    }
+}
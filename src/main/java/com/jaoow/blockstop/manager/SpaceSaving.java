@@ -0,0 +1,198 @@
+package com.jaoow.blockstop.manager;
+
+import com.jaoow.blockstop.utils.Pair;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.UUID;
+
+/**
+ * Approximate top users of a leaderboard in bounded memory, using the
+ * Space-Saving algorithm.
+ * <p>
+ * At most {@code capacity} users are monitored. When a new user arrives with
+ * every counter taken, the smallest counter is handed over to it and keeps
+ * its count, which becomes the error of the new user. Each counter remembers
+ * that error, so {@code count - error} is a count the user is guaranteed to have.
+ * <p>
+ * The summary is seeded with exact counts, see {@link #seed}, and then only
+ * offered the increments, so {@code N} only covers the blocks broken since:
+ * <ul>
+ *     <li>an estimated count is never below the real one and exceeds it
+ *     by at most its error, itself at most {@code N / capacity} plus the
+ *     smallest seeded count;</li>
+ *     <li>every user whose real count is above the smallest count is monitored.</li>
+ * </ul>
+ */
+class SpaceSaving {
+
+    private static final Comparator<Counter> ORDER = Comparator
+            .comparingLong((Counter counter) -> counter.count)
+            .thenComparing(counter -> counter.uuid);
+
+    private final int capacity;
+
+    private final Map<UUID, Counter> counters = new HashMap<>();
+    private final TreeSet<Counter> ordered = new TreeSet<>(ORDER);
+    private volatile long version = ScoreRanking.nextVersion();
+
+    SpaceSaving(int capacity) {
+        this.capacity = Math.max(1, capacity);
+    }
+
+    int getCapacity() {
+        return capacity;
+    }
+
+    long getVersion() {
+        return version;
+    }
+
+    /**
+     * Count blocks for the user.
+     *
+     * @param uuid   the user id
+     * @param amount the amount of blocks
+     */
+    synchronized void offer(UUID uuid, long amount) {
+        if (amount <= 0) return;
+        version = ScoreRanking.nextVersion();
+
+        Counter counter = counters.get(uuid);
+        if (counter != null) {
+            ordered.remove(counter);
+            counter.count += amount;
+            ordered.add(counter);
+            return;
+        }
+
+        // The new user inherits the smallest count, its possible overestimation.
+        long inherited = 0;
+        if (counters.size() >= capacity) {
+            Counter smallest = ordered.pollFirst();
+            counters.remove(smallest.uuid);
+            inherited = smallest.count;
+        }
+
+        counter = new Counter(uuid, inherited + amount, inherited);
+        counters.put(uuid, counter);
+        ordered.add(counter);
+    }
+
+    /**
+     * Monitor the user with its exact count, before anything is offered.
+     * Ignored once every counter is taken.
+     *
+     * @param uuid  the user id
+     * @param count the exact count
+     */
+    synchronized void seed(UUID uuid, long count) {
+        if (count <= 0 || counters.size() >= capacity || counters.containsKey(uuid)) return;
+
+        Counter counter = new Counter(uuid, count, 0);
+        counters.put(uuid, counter);
+        ordered.add(counter);
+        version = ScoreRanking.nextVersion();
+    }
+
+    /**
+     * Get the users with the highest estimated counts, highest first.
+     *
+     * @param limit the maximum amount of users
+     * @return the users and their estimated counts
+     */
+    List<Pair<UUID, Long>> top(int limit) {
+        return range(0, limit);
+    }
+
+    /**
+     * Get the users from the given position on, highest first.
+     *
+     * @param from  the first position, starting at 0
+     * @param limit the maximum amount of users
+     * @return the users and their estimated counts
+     */
+    synchronized List<Pair<UUID, Long>> range(int from, int limit) {
+        List<Pair<UUID, Long>> range = new ArrayList<>(Math.max(0, Math.min(limit, counters.size() - from)));
+
+        Iterator<Counter> iterator = ordered.descendingIterator();
+        for (int skipped = 0; skipped < from && iterator.hasNext(); skipped++) {
+            iterator.next();
+        }
+
+        while (iterator.hasNext() && range.size() < limit) {
+            Counter counter = iterator.next();
+            range.add(Pair.of(counter.uuid, counter.count));
+        }
+        return range;
+    }
+
+    /**
+     * Get the estimated count of the user.
+     *
+     * @param uuid the user id
+     * @return the count, never below the real one, or zero if the user is not monitored
+     */
+    synchronized long estimate(UUID uuid) {
+        Counter counter = counters.get(uuid);
+        return counter == null ? 0 : counter.count;
+    }
+
+    /**
+     * Get the maximum overestimation of the count of the user.
+     *
+     * @param uuid the user id
+     * @return the error, or zero if the user is not monitored
+     */
+    synchronized long error(UUID uuid) {
+        Counter counter = counters.get(uuid);
+        return counter == null ? 0 : counter.error;
+    }
+
+    /**
+     * Get the estimated position of the user, in O(capacity).
+     *
+     * @param uuid the user id
+     * @return the position starting at 1, or -1 if the user is not monitored
+     */
+    synchronized int rank(UUID uuid) {
+        Counter counter = counters.get(uuid);
+        return counter == null ? -1 : ordered.tailSet(counter, false).size() + 1;
+    }
+
+    synchronized int size() {
+        return counters.size();
+    }
+
+    /**
+     * Get the maximum overestimation of the monitored counts, in O(capacity).
+     *
+     * @return the largest error of a counter
+     */
+    synchronized long getErrorBound() {
+        long bound = 0;
+        for (Counter counter : counters.values()) {
+            bound = Math.max(bound, counter.error);
+        }
+        return bound;
+    }
+
+    private static final class Counter {
+
+        private final UUID uuid;
+        private long count;
+        // Count inherited when the user took the counter over, its possible overestimation.
+        private final long error;
+
+        private Counter(UUID uuid, long count, long error) {
+            this.uuid = uuid;
+            this.count = count;
+            this.error = error;
+        }
+    }
+}
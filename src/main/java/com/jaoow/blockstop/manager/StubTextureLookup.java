@@ -0,0 +1,25 @@
+package com.jaoow.blockstop.manager;
+
+import com.jaoow.blockstop.model.SkullTextures;
+
+import java.util.UUID;
+
+/**
+ * Local lookup giving every user the same textures, to run without the session service.
+ */
+public class StubTextureLookup implements TextureLookup {
+
+    private final SkullTextures textures;
+
+    /**
+     * @param value the base64 encoded textures given to every user
+     */
+    public StubTextureLookup(String value) {
+        this.textures = new SkullTextures(value, null);
+    }
+
+    @Override
+    public SkullTextures lookup(UUID uuid) {
+        return textures;
+    }
+}
@@ -0,0 +1,24 @@
+package com.jaoow.blockstop.manager;
+
+import com.jaoow.blockstop.model.SkullTextures;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.util.UUID;
+
+/**
+ * Lookup of the skin textures of the users, see {@link SessionProfileSource}.
+ */
+@FunctionalInterface
+public interface TextureLookup {
+
+    /**
+     * Look the textures of the user up. Called off the main thread, so it may block.
+     *
+     * @param uuid the user id
+     * @return the textures, or null if the user has none
+     * @throws IOException if the lookup failed
+     */
+    @Nullable
+    SkullTextures lookup(UUID uuid) throws IOException;
+}
@@ -0,0 +1,97 @@
+package com.jaoow.blockstop.manager;
+
+import com.jaoow.blockstop.dao.UserWriteBehind;
+import com.jaoow.blockstop.model.MineUser;
+import org.bukkit.Bukkit;
+import org.bukkit.plugin.Plugin;
+import org.bukkit.scheduler.BukkitTask;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Evicts offline users from the {@link MineUserManager}.
+ * <p>
+ * A user is evicted once it has been idle for the configured time, or earlier
+ * when more users than allowed are resident, least recently accessed first.
+ * Dirty users are written back before leaving memory, so a rejoining user is
+ * read again from the database with every block counted.
+ */
+public class UserEvictor implements Runnable {
+
+    private final Plugin plugin;
+    private final MineUserManager userManager;
+    private final UserWriteBehind writeBehind;
+
+    private final long idleMillis;
+    private final int maxResident;
+
+    private final AtomicLong evictions = new AtomicLong();
+    private BukkitTask task;
+
+    /**
+     * @param idleSeconds seconds an offline user stays loaded, negative to disable
+     * @param maxResident maximum loaded users, zero for no limit
+     */
+    public UserEvictor(Plugin plugin, MineUserManager userManager, UserWriteBehind writeBehind,
+                       long idleSeconds, int maxResident) {
+        this.plugin = plugin;
+        this.userManager = userManager;
+        this.writeBehind = writeBehind;
+        this.idleMillis = idleSeconds < 0 ? -1 : TimeUnit.SECONDS.toMillis(idleSeconds);
+        this.maxResident = Math.max(0, maxResident);
+    }
+
+    public void start(long intervalSeconds) {
+        if (idleMillis < 0 && maxResident == 0) return;
+
+        long ticks = Math.max(1, intervalSeconds) * 20L;
+        task = Bukkit.getScheduler().runTaskTimerAsynchronously(plugin, this, ticks, ticks);
+    }
+
+    public void stop() {
+        if (task != null) {
+            task.cancel();
+            task = null;
+        }
+    }
+
+    @Override
+    public void run() {
+        if (userManager.isWarming()) return;
+
+        List<MineUser> offline = new ArrayList<>();
+        for (MineUser user : userManager.getUsers()) {
+            if (!userManager.isOnline(user.getUniqueId())) offline.add(user);
+        }
+        if (offline.isEmpty()) return;
+
+        offline.sort(Comparator.comparingLong(MineUser::getLastAccess));
+
+        long now = System.currentTimeMillis();
+        int excess = maxResident == 0 ? 0 : userManager.getResidentCount() - maxResident;
+
+        List<MineUser> candidates = new ArrayList<>();
+        for (MineUser user : offline) {
+            boolean idle = idleMillis >= 0 && now - user.getLastAccess() >= idleMillis;
+            if (idle || candidates.size() < excess) {
+                candidates.add(user);
+            }
+        }
+        if (candidates.isEmpty()) return;
+
+        // Users that fail to save stay resident and are retried on the next run.
+        if (!writeBehind.saveNow(candidates)) return;
+
+        for (MineUser user : candidates) {
+            if (userManager.evict(user)) evictions.incrementAndGet();
+        }
+    }
+
+    public long getEvictionCount() {
+        return evictions.get();
+    }
+}
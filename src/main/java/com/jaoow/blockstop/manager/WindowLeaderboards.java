@@ -0,0 +1,360 @@
+package com.jaoow.blockstop.manager;
+
+import com.jaoow.blockstop.dao.UserDao;
+import com.jaoow.blockstop.model.BlockCategory;
+import com.jaoow.blockstop.model.TimeWindow;
+import com.jaoow.blockstop.model.WindowCounter;
+import com.jaoow.blockstop.utils.Pair;
+import lombok.Getter;
+import org.bukkit.Bukkit;
+import org.bukkit.Material;
+import org.bukkit.plugin.Plugin;
+import org.bukkit.scheduler.BukkitTask;
+
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Level;
+
+/**
+ * Leaderboards of the blocks broken in the last days, see {@link TimeWindow}.
+ * <p>
+ * Only users that broke something within the ring of daily buckets are
+ * kept, resident or not. Rankings are updated as blocks are counted, and
+ * once a day only the users with a bucket leaving a window are ranked again,
+ * found through an index of the users with a bucket on each day.
+ */
+public class WindowLeaderboards implements Runnable {
+
+    private static final TimeWindow[] WINDOWS = TimeWindow.values();
+
+    private final Plugin plugin;
+    private final UserDao userDao;
+    private final BlockCategory[] categories;
+
+    @Getter
+    private final boolean enabled;
+
+    private final Map<UUID, WindowCounter> counters = new ConcurrentHashMap<>();
+
+    // Users with buckets not saved yet.
+    private final Set<UUID> dirty = ConcurrentHashMap.newKeySet();
+    private final Object flushLock = new Object();
+
+    // Users with a bucket on each day of the ring.
+    private final Map<Long, Set<UUID>> usersByDay = new HashMap<>();
+
+    private ScoreRanking[][] rankings;
+    private long today;
+    private long nextDayMillis;
+
+    private BukkitTask task;
+
+    /**
+     * @param categories the categories, ordered by index
+     * @param enabled    if blocks are counted, nothing is kept otherwise
+     */
+    public WindowLeaderboards(Plugin plugin, UserDao userDao, BlockCategory[] categories, boolean enabled) {
+        this.plugin = plugin;
+        this.userDao = userDao;
+        this.categories = categories;
+        this.enabled = enabled;
+        this.rankings = createRankings();
+    }
+
+    /**
+     * Read the buckets still inside the ring and delete the older ones.
+     */
+    public synchronized void load() {
+        if (!enabled) return;
+
+        startDay();
+        long first = today - WindowCounter.BUCKETS + 1;
+
+        counters.putAll(userDao.selectBuckets(first, categories));
+        rebuild();
+        index();
+
+        userDao.deleteBucketsBefore(first);
+    }
+
+    /**
+     * Start the periodic asynchronous save.
+     *
+     * @param intervalSeconds the seconds between each save
+     */
+    public void start(long intervalSeconds) {
+        if (!enabled) return;
+
+        long ticks = Math.max(1, intervalSeconds) * 20L;
+        task = Bukkit.getScheduler().runTaskTimerAsynchronously(plugin, this, ticks, ticks);
+    }
+
+    /**
+     * Stop the periodic save and write every pending bucket.
+     */
+    public void shutdown() {
+        if (task != null) {
+            task.cancel();
+            task = null;
+        }
+        run();
+    }
+
+    /**
+     * Count broken blocks for the user in today's bucket.
+     *
+     * @param uuid     the user id
+     * @param material the broken material
+     * @param amount   the amount of blocks
+     */
+    public synchronized void record(UUID uuid, Material material, long amount) {
+        if (!enabled || amount <= 0) return;
+        roll();
+
+        WindowCounter counter = null;
+        for (BlockCategory category : categories) {
+            if (!category.contains(material)) continue;
+
+            if (counter == null) {
+                counter = counters.computeIfAbsent(uuid, id -> new WindowCounter(categories.length));
+            }
+
+            int index = category.getIndex();
+            counter.add(today, index, amount);
+
+            for (TimeWindow window : WINDOWS) {
+                long score = counter.sum(today, index, window);
+                ScoreRanking ranking = rankings[window.ordinal()][index];
+
+                if (score > amount) ranking.remove(uuid, score - amount);
+                ranking.insert(uuid, score);
+            }
+        }
+
+        if (counter != null) {
+            usersByDay.computeIfAbsent(today, day -> new HashSet<>()).add(uuid);
+            dirty.add(uuid);
+        }
+    }
+
+    /**
+     * Get the best users of the category in the window, highest score first.
+     *
+     * @param window   the window
+     * @param category the category
+     * @param limit    the maximum amount of users
+     * @return the users and their scores
+     */
+    public List<Pair<UUID, Long>> getTop(TimeWindow window, BlockCategory category, int limit) {
+        return getRange(window, category, 0, limit);
+    }
+
+    /**
+     * Get the users of the category in the window from the given position on.
+     *
+     * @param window   the window
+     * @param category the category
+     * @param from     the first position, starting at 0
+     * @param limit    the maximum amount of users
+     * @return the users and their scores
+     */
+    public synchronized List<Pair<UUID, Long>> getRange(TimeWindow window, BlockCategory category, int from, int limit) {
+        if (limit <= 0 || category.getIndex() >= categories.length) return new ArrayList<>();
+        roll();
+
+        return rankings[window.ordinal()][category.getIndex()].range(from, limit);
+    }
+
+    public synchronized long getScore(UUID uuid, TimeWindow window, BlockCategory category) {
+        roll();
+
+        WindowCounter counter = counters.get(uuid);
+        return counter == null ? 0 : counter.sum(today, category.getIndex(), window);
+    }
+
+    /**
+     * Get the position of the user in the category and window.
+     *
+     * @param uuid     the user id
+     * @param window   the window
+     * @param category the category
+     * @return the position starting at 1, or -1 if the user has no blocks in the window
+     */
+    public synchronized int getRank(UUID uuid, TimeWindow window, BlockCategory category) {
+        long score = getScore(uuid, window, category);
+        if (score <= 0) return -1;
+
+        return rankings[window.ordinal()][category.getIndex()].rank(uuid, score);
+    }
+
+    public synchronized int getRankedCount(TimeWindow window, BlockCategory category) {
+        roll();
+        return rankings[window.ordinal()][category.getIndex()].size();
+    }
+
+    /**
+     * Get the version of the ranking of the category in the window, changed by every update.
+     *
+     * @param window   the window
+     * @param category the category
+     * @return the version
+     */
+    public synchronized long getVersion(TimeWindow window, BlockCategory category) {
+        roll();
+        return rankings[window.ordinal()][category.getIndex()].getVersion();
+    }
+
+    public int size() {
+        return counters.size();
+    }
+
+    /**
+     * Write the buckets of the users that changed since the last save.
+     */
+    @Override
+    public void run() {
+        synchronized (flushLock) {
+            Map<UUID, WindowCounter> changed = new HashMap<>();
+            for (Iterator<UUID> iterator = dirty.iterator(); iterator.hasNext(); ) {
+                UUID uuid = iterator.next();
+                iterator.remove();
+
+                WindowCounter counter = counters.get(uuid);
+                if (counter != null) changed.put(uuid, counter);
+            }
+
+            long day;
+            synchronized (this) {
+                day = today;
+            }
+
+            try {
+                userDao.saveBuckets(changed, day, categories);
+            } catch (Exception e) {
+                plugin.getLogger().log(Level.WARNING, "Failed to save the buckets of " + changed.size() + " users, retrying on next save.", e);
+                dirty.addAll(changed.keySet());
+            }
+        }
+    }
+
+    /**
+     * Update the rankings once the day changes, each window losing its oldest bucket.
+     * Only a gap longer than the ring, when every bucket expired, ranks everyone again.
+     */
+    private void roll() {
+        if (System.currentTimeMillis() < nextDayMillis) return;
+
+        long previous = today;
+        startDay();
+        if (today == previous) return;
+
+        if (today - previous >= WindowCounter.BUCKETS) {
+            rebuild();
+            index();
+        } else {
+            for (long day = previous + 1; day <= today; day++) {
+                expire(day);
+            }
+        }
+
+        long first = today - WindowCounter.BUCKETS + 1;
+        Bukkit.getScheduler().runTaskAsynchronously(plugin, () -> userDao.deleteBucketsBefore(first));
+    }
+
+    private void startDay() {
+        ZoneId zone = ZoneId.systemDefault();
+        LocalDate date = LocalDate.now(zone);
+
+        today = date.toEpochDay();
+        nextDayMillis = date.plusDays(1).atStartOfDay(zone).toInstant().toEpochMilli();
+    }
+
+    /**
+     * Rank the users with buckets left, dropping the counters that expired.
+     */
+    private void rebuild() {
+        rankings = createRankings();
+
+        for (Iterator<Map.Entry<UUID, WindowCounter>> iterator = counters.entrySet().iterator(); iterator.hasNext(); ) {
+            Map.Entry<UUID, WindowCounter> entry = iterator.next();
+            WindowCounter counter = entry.getValue();
+
+            if (counter.isExpired(today)) {
+                iterator.remove();
+                continue;
+            }
+
+            for (TimeWindow window : WINDOWS) {
+                for (int index = 0; index < categories.length; index++) {
+                    long score = counter.sum(today, index, window);
+                    if (score > 0) rankings[window.ordinal()][index].insert(entry.getKey(), score);
+                }
+            }
+        }
+    }
+
+    /**
+     * Rank again the users with a bucket leaving a window on the day, and drop
+     * the counters of the users whose buckets all left the ring.
+     *
+     * @param day the new day, the rankings being up to date with the day before
+     */
+    private void expire(long day) {
+        for (TimeWindow window : WINDOWS) {
+            Set<UUID> users = usersByDay.get(day - window.getDays());
+            if (users == null) continue;
+
+            for (UUID uuid : users) {
+                WindowCounter counter = counters.get(uuid);
+                if (counter == null) continue;
+
+                for (int index = 0; index < categories.length; index++) {
+                    long before = counter.sum(day - 1, index, window);
+                    long after = counter.sum(day, index, window);
+                    if (before == after) continue;
+
+                    ScoreRanking ranking = rankings[window.ordinal()][index];
+                    if (before > 0) ranking.remove(uuid, before);
+                    if (after > 0) ranking.insert(uuid, after);
+                }
+            }
+        }
+
+        Set<UUID> expired = usersByDay.remove(day - WindowCounter.BUCKETS);
+        if (expired == null) return;
+
+        for (UUID uuid : expired) {
+            WindowCounter counter = counters.get(uuid);
+            if (counter != null && counter.isExpired(day)) counters.remove(uuid);
+        }
+    }
+
+    /**
+     * Index the users by the days of their buckets.
+     */
+    private void index() {
+        usersByDay.clear();
+
+        counters.forEach((uuid, counter) -> counter.forEach(today,
+                (day, category, amount) -> usersByDay.computeIfAbsent(day, key -> new HashSet<>()).add(uuid)));
+    }
+
+    private ScoreRanking[][] createRankings() {
+        ScoreRanking[][] rankings = new ScoreRanking[WINDOWS.length][categories.length];
+        for (ScoreRanking[] byCategory : rankings) {
+            for (int index = 0; index < byCategory.length; index++) {
+                byCategory[index] = new ScoreRanking();
+            }
+        }
+        return rankings;
+    }
+}
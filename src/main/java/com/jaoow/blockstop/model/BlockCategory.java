@@ -0,0 +1,47 @@
+package com.jaoow.blockstop.model;
+
+import lombok.AccessLevel;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.ToString;
+import org.bukkit.Material;
+
+import java.util.BitSet;
+
+/**
+ * A named group of materials compiled into a bitset keyed by {@link Material#ordinal()}.
+ */
+@Getter
+@ToString(of = "id")
+@EqualsAndHashCode(of = "id")
+public final class BlockCategory {
+
+    private final String id;
+    private final int index;
+
+    @Getter(AccessLevel.NONE)
+    private final BitSet materials;
+
+    public BlockCategory(String id, int index, BitSet materials) {
+        this.id = id;
+        this.index = index;
+        this.materials = (BitSet) materials.clone();
+    }
+
+    public boolean contains(Material material) {
+        return materials.get(material.ordinal());
+    }
+
+    public boolean contains(int ordinal) {
+        return materials.get(ordinal);
+    }
+
+    /**
+     * Get the amount of materials in this category.
+     *
+     * @return the amount of materials
+     */
+    public int size() {
+        return materials.cardinality();
+    }
+}
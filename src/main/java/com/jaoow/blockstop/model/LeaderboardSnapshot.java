@@ -0,0 +1,111 @@
+package com.jaoow.blockstop.model;
+
+import com.jaoow.blockstop.utils.Pair;
+import lombok.Getter;
+
+import java.text.DecimalFormat;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Immutable view of the top of a leaderboard at some instant,
+ * safe to share between threads.
+ */
+public final class LeaderboardSnapshot {
+
+    private final UUID[] users;
+    private final long[] scores;
+    private final String[] formatted;
+
+    @Getter
+    private final long createdAt;
+
+    /**
+     * The version of the ranking the snapshot was taken from, zero if unknown.
+     */
+    @Getter
+    private final long version;
+
+    private LeaderboardSnapshot(UUID[] users, long[] scores, String[] formatted, long createdAt, long version) {
+        this.users = users;
+        this.scores = scores;
+        this.formatted = formatted;
+        this.createdAt = createdAt;
+        this.version = version;
+    }
+
+    /**
+     * @param top    the users and their scores, highest first
+     * @param format the format of the scores, only used while creating
+     * @return the snapshot, without a version
+     */
+    public static LeaderboardSnapshot of(List<Pair<UUID, Long>> top, DecimalFormat format) {
+        return of(top, format, 0);
+    }
+
+    /**
+     * @param top     the users and their scores, highest first
+     * @param format  the format of the scores, only used while creating
+     * @param version the version of the ranking, read before the users
+     * @return the snapshot
+     */
+    public static LeaderboardSnapshot of(List<Pair<UUID, Long>> top, DecimalFormat format, long version) {
+        int size = top.size();
+        UUID[] users = new UUID[size];
+        long[] scores = new long[size];
+        String[] formatted = new String[size];
+
+        for (int i = 0; i < size; i++) {
+            Pair<UUID, Long> entry = top.get(i);
+            users[i] = entry.getKey();
+            scores[i] = entry.getValue();
+            formatted[i] = format.format(scores[i]);
+        }
+
+        return new LeaderboardSnapshot(users, scores, formatted, System.currentTimeMillis(), version);
+    }
+
+    /**
+     * Get the part of the snapshot from the given position on.
+     *
+     * @param from  the first position, starting at 0
+     * @param limit the maximum amount of users
+     * @return the snapshot of the part, created at the same instant and version
+     */
+    public LeaderboardSnapshot slice(int from, int limit) {
+        int start = Math.min(Math.max(0, from), users.length);
+        int end = Math.min(users.length, start + Math.max(0, limit));
+
+        return new LeaderboardSnapshot(
+                Arrays.copyOfRange(users, start, end),
+                Arrays.copyOfRange(scores, start, end),
+                Arrays.copyOfRange(formatted, start, end),
+                createdAt,
+                version);
+    }
+
+    public int size() {
+        return users.length;
+    }
+
+    /**
+     * @param position the position starting at 0
+     * @return the user at the position
+     */
+    public UUID getUser(int position) {
+        return users[position];
+    }
+
+    public long getScore(int position) {
+        return scores[position];
+    }
+
+    public String getFormattedScore(int position) {
+        return formatted[position];
+    }
+
+    public long getAgeMillis() {
+        return System.currentTimeMillis() - createdAt;
+    }
+}
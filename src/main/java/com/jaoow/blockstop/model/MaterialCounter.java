@@ -0,0 +1,188 @@
+package com.jaoow.blockstop.model;
+
+import org.bukkit.Material;
+
+import java.util.Arrays;
+import java.util.function.ObjLongConsumer;
+
+/**
+ * Sparse open-addressing map from {@link Material#ordinal()} to a mined amount.
+ * <p>
+ * Incrementing a material that is already present never allocates, the
+ * table only grows when a new material pushes it past half of its capacity.
+ *
+ * @author Jaoow
+ * @version 1.0
+ */
+public final class MaterialCounter {
+
+    private static final Material[] MATERIALS = Material.values();
+
+    private static final int EMPTY = -1;
+    private static final int DEFAULT_CAPACITY = 16;
+
+    private int[] keys;
+    private long[] values;
+    private int size;
+
+    public MaterialCounter() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * @param capacity the initial table capacity, rounded to a power of two
+     */
+    public MaterialCounter(int capacity) {
+        int tableSize = Integer.highestOneBit(Math.max(DEFAULT_CAPACITY, capacity) - 1) << 1;
+
+        this.keys = new int[tableSize];
+        this.values = new long[tableSize];
+        Arrays.fill(keys, EMPTY);
+    }
+
+    /**
+     * Get the material of the given ordinal.
+     *
+     * @param ordinal the ordinal
+     * @return the material
+     */
+    public static Material material(int ordinal) {
+        return MATERIALS[ordinal];
+    }
+
+    /**
+     * Get the amount of materials known by the server.
+     *
+     * @return the amount of materials
+     */
+    public static int materialCount() {
+        return MATERIALS.length;
+    }
+
+    /**
+     * Add one to the counter of the material.
+     *
+     * @param material the material
+     * @return the new amount
+     */
+    public long increment(Material material) {
+        return add(material, 1);
+    }
+
+    /**
+     * Add an amount to the counter of the material.
+     *
+     * @param material the material
+     * @param amount   the amount to add
+     * @return the new amount
+     */
+    public long add(Material material, long amount) {
+        int ordinal = material.ordinal();
+        int index = indexOf(keys, ordinal);
+
+        if (keys[index] == EMPTY) {
+            keys[index] = ordinal;
+            values[index] = amount;
+
+            if (++size * 2 > keys.length) {
+                rehash(keys.length << 1);
+            }
+            return amount;
+        }
+
+        return values[index] += amount;
+    }
+
+    /**
+     * Get the amount of the material.
+     *
+     * @param material the material
+     * @return the amount, zero if never counted
+     */
+    public long get(Material material) {
+        int index = indexOf(keys, material.ordinal());
+        return keys[index] == EMPTY ? 0 : values[index];
+    }
+
+    /**
+     * Get the sum of all amounts.
+     *
+     * @return the total
+     */
+    public long total() {
+        long total = 0;
+        for (int index = 0; index < keys.length; index++) {
+            if (keys[index] != EMPTY) {
+                total += values[index];
+            }
+        }
+        return total;
+    }
+
+    /**
+     * Iterate over every counted material.
+     *
+     * @param consumer the consumer of material and amount
+     */
+    public void forEach(ObjLongConsumer<Material> consumer) {
+        for (int index = 0; index < keys.length; index++) {
+            if (keys[index] != EMPTY) {
+                consumer.accept(MATERIALS[keys[index]], values[index]);
+            }
+        }
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public void clear() {
+        Arrays.fill(keys, EMPTY);
+        Arrays.fill(values, 0);
+        size = 0;
+    }
+
+    /**
+     * Create an independent copy of this counter.
+     *
+     * @return the copy
+     */
+    public MaterialCounter copy() {
+        MaterialCounter copy = new MaterialCounter(keys.length);
+        copy.keys = keys.clone();
+        copy.values = values.clone();
+        copy.size = size;
+        return copy;
+    }
+
+    private void rehash(int capacity) {
+        int[] oldKeys = keys;
+        long[] oldValues = values;
+
+        keys = new int[capacity];
+        values = new long[capacity];
+        Arrays.fill(keys, EMPTY);
+
+        for (int index = 0; index < oldKeys.length; index++) {
+            if (oldKeys[index] != EMPTY) {
+                int target = indexOf(keys, oldKeys[index]);
+                keys[target] = oldKeys[index];
+                values[target] = oldValues[index];
+            }
+        }
+    }
+
+    private static int indexOf(int[] keys, int ordinal) {
+        int mask = keys.length - 1;
+        int index = (ordinal * 0x9E3779B9) >>> 16 & mask;
+
+        while (keys[index] != EMPTY && keys[index] != ordinal) {
+            index = (index + 1) & mask;
+        }
+        return index;
+    }
+}
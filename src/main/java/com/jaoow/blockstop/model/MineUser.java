@@ -1,29 +1,180 @@
 package com.jaoow.blockstop.model;
 
-import com.google.common.collect.Maps;
-import lombok.Data;
+import lombok.AccessLevel;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.ToString;
 import org.bukkit.Material;
 
-import java.util.EnumMap;
-import java.util.LinkedHashMap;
-import java.util.Map;
+import java.util.Arrays;
 import java.util.UUID;
 
-@Data
+@Getter
+@ToString(of = "uniqueId")
+@EqualsAndHashCode(of = "uniqueId")
 public class MineUser {
 
     private final UUID uniqueId;
-    private final LinkedHashMap<Material, Double> materialMap = Maps.newLinkedHashMap();
+    private final MaterialCounter materials;
+
+    private final BlockCategory[] categories;
+    @Getter(AccessLevel.NONE)
+    private final long[] totals;
+
+    // Blocks counted since the last save, guarded by this.
+    @Getter(AccessLevel.NONE)
+    private MaterialCounter unsaved = new MaterialCounter();
+
+    // Set when there are blocks not written to the database yet.
+    private volatile boolean dirty;
+
+    // Set when the user is stored in another layout, written as a whole on its next save.
+    private volatile boolean migrating;
+
+    // Last time the user was accessed while offline, used for eviction.
+    private volatile long lastAccess = System.currentTimeMillis();
+
+    /**
+     * @param uniqueId   the user id
+     * @param categories the categories to keep totals of, ordered by index
+     */
+    public MineUser(UUID uniqueId, BlockCategory[] categories) {
+        this(uniqueId, new MaterialCounter(), categories);
+    }
+
+    /**
+     * Create a user from already counted materials,
+     * the totals are rebuilt once from the counter.
+     *
+     * @param uniqueId   the user id
+     * @param materials  the counted materials
+     * @param categories the categories to keep totals of, ordered by index
+     */
+    public MineUser(UUID uniqueId, MaterialCounter materials, BlockCategory[] categories) {
+        this.uniqueId = uniqueId;
+        this.materials = materials;
+        this.categories = categories;
+        this.totals = new long[categories.length];
+        recalculateTotals();
+    }
 
     public void addMaterial(Material material) {
-        materialMap.compute(material, (k, v) -> v != null ? v + 1 : 1);
+        addMaterial(material, 1);
+    }
+
+    public synchronized void addMaterial(Material material, long amount) {
+        materials.add(material, amount);
+        unsaved.add(material, amount);
+
+        int ordinal = material.ordinal();
+        for (BlockCategory category : categories) {
+            if (category.contains(ordinal)) totals[category.getIndex()] += amount;
+        }
+    }
+
+    public long getAmount(Material material) {
+        return materials.get(material);
+    }
+
+    /**
+     * Get the amount of blocks mined in the category.
+     *
+     * @param category the category
+     * @return the total
+     */
+    public long getTotal(BlockCategory category) {
+        return category.getIndex() < totals.length ? totals[category.getIndex()] : 0;
+    }
+
+    /**
+     * Get the live totals indexed by {@link BlockCategory#getIndex()},
+     * the array is not copied and must not be modified.
+     *
+     * @return the totals
+     */
+    public long[] getTotals() {
+        return totals;
+    }
+
+    public long getMinedAmount() {
+        return totals[0];
+    }
+
+    /**
+     * Copy the counted materials so they can be
+     * serialized outside of the main thread.
+     *
+     * @return the copy of the counter
+     */
+    public synchronized MaterialCounter snapshotMaterials() {
+        return materials.copy();
+    }
+
+    /**
+     * Take the blocks counted since the last call, starting a new empty delta.
+     *
+     * @return the unsaved delta
+     */
+    public synchronized MaterialCounter drainUnsaved() {
+        MaterialCounter drained = unsaved;
+        unsaved = new MaterialCounter();
+        return drained;
+    }
+
+    /**
+     * Give back a delta that could not be saved.
+     *
+     * @param delta the delta
+     */
+    public synchronized void restoreUnsaved(MaterialCounter delta) {
+        delta.forEach(unsaved::add);
+    }
+
+    public synchronized boolean hasUnsaved() {
+        return !unsaved.isEmpty();
+    }
+
+    /**
+     * Flag this user as having unsaved changes.
+     *
+     * @return true if the user was clean before
+     */
+    public boolean markDirty() {
+        if (dirty) return false;
+        dirty = true;
+        return true;
+    }
+
+    public void clearDirty() {
+        dirty = false;
+    }
+
+    /**
+     * Flag this user as stored in another layout, so its next
+     * save writes every amount instead of the unsaved ones.
+     */
+    public void markMigrating() {
+        migrating = true;
+    }
+
+    public void clearMigrating() {
+        migrating = false;
     }
 
-    public double getMinedAmount() {
-        return this.materialMap.values().stream().mapToDouble(v -> v).sum();
+    public void touch() {
+        lastAccess = System.currentTimeMillis();
     }
 
-    public double getMinedOres() {
-        return this.materialMap.entrySet().stream().filter(entry -> entry.getKey().name().contains("ORE")).mapToDouble(Map.Entry::getValue).sum();
+    /**
+     * Rebuild the running totals from the material counter.
+     */
+    public synchronized void recalculateTotals() {
+        Arrays.fill(totals, 0);
+        materials.forEach((material, amount) -> {
+            int ordinal = material.ordinal();
+            for (BlockCategory category : categories) {
+                if (category.contains(ordinal)) totals[category.getIndex()] += amount;
+            }
+        });
     }
 }
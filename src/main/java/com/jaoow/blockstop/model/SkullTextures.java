@@ -0,0 +1,24 @@
+package com.jaoow.blockstop.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * The signed {@code textures} property of a game profile, holding the skin of a skull.
+ */
+@Getter
+@AllArgsConstructor
+public final class SkullTextures {
+
+    /**
+     * Base64 encoded textures
+     */
+    private final String value;
+
+    /**
+     * Signature of the value, null when unsigned
+     */
+    @Nullable
+    private final String signature;
+}
@@ -0,0 +1,46 @@
+package com.jaoow.blockstop.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.util.Locale;
+import java.util.Optional;
+
+/**
+ * Rolling periods of the windowed leaderboards, counted in daily buckets.
+ */
+@Getter
+@AllArgsConstructor
+public enum TimeWindow {
+
+    /**
+     * Blocks broken today.
+     */
+    DAILY(1),
+
+    /**
+     * Blocks broken in the last 7 days, today included.
+     */
+    WEEKLY(7),
+
+    /**
+     * Blocks broken in the last 30 days, today included.
+     */
+    MONTHLY(30);
+
+    private final int days;
+
+    public String getId() {
+        return name().toLowerCase(Locale.ROOT);
+    }
+
+    public static Optional<TimeWindow> fromName(String name) {
+        if (name == null) return Optional.empty();
+
+        try {
+            return Optional.of(valueOf(name.trim().toUpperCase(Locale.ROOT)));
+        } catch (IllegalArgumentException e) {
+            return Optional.empty();
+        }
+    }
+}
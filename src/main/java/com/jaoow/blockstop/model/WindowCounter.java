@@ -0,0 +1,100 @@
+package com.jaoow.blockstop.model;
+
+import java.util.Arrays;
+
+/**
+ * Blocks broken by a user per category over the last days, kept in a
+ * ring of daily buckets.
+ * <p>
+ * A bucket is reclaimed when its slot is written on a later day, and
+ * reads ignore buckets of days outside the window, so expired counts
+ * never need a pass of their own.
+ */
+public class WindowCounter {
+
+    /**
+     * The amount of daily buckets, enough for the longest {@link TimeWindow}.
+     */
+    public static final int BUCKETS = 32;
+
+    private final int categories;
+
+    private final long[] days = new long[BUCKETS];
+    private final long[] amounts;
+
+    /**
+     * @param categories the amount of categories
+     */
+    public WindowCounter(int categories) {
+        this.categories = categories;
+        this.amounts = new long[BUCKETS * categories];
+        Arrays.fill(days, -1);
+    }
+
+    public synchronized void add(long day, int category, long amount) {
+        int slot = slot(day);
+        if (days[slot] != day) {
+            days[slot] = day;
+            Arrays.fill(amounts, slot * categories, (slot + 1) * categories, 0);
+        }
+        amounts[slot * categories + category] += amount;
+    }
+
+    /**
+     * Sum the buckets of the window ending today.
+     *
+     * @param today    the current epoch day
+     * @param category the category index
+     * @param window   the window
+     * @return the amount of blocks
+     */
+    public synchronized long sum(long today, int category, TimeWindow window) {
+        long total = 0;
+        for (long day = today - window.getDays() + 1; day <= today; day++) {
+            int slot = slot(day);
+            if (days[slot] == day) total += amounts[slot * categories + category];
+        }
+        return total;
+    }
+
+    /**
+     * Check if every bucket is older than the ring, the counter can then be dropped.
+     *
+     * @param today the current epoch day
+     * @return true if expired
+     */
+    public synchronized boolean isExpired(long today) {
+        for (long day : days) {
+            if (day > today - BUCKETS) return false;
+        }
+        return true;
+    }
+
+    /**
+     * Visit the non empty buckets that are not expired.
+     *
+     * @param today    the current epoch day
+     * @param consumer the consumer of each bucket
+     */
+    public synchronized void forEach(long today, BucketConsumer consumer) {
+        for (int slot = 0; slot < BUCKETS; slot++) {
+            long day = days[slot];
+            if (day <= today - BUCKETS) continue;
+
+            for (int category = 0; category < categories; category++) {
+                long amount = amounts[slot * categories + category];
+                if (amount > 0) consumer.accept(day, category, amount);
+            }
+        }
+    }
+
+    private static int slot(long day) {
+        return (int) Math.floorMod(day, (long) BUCKETS);
+    }
+
+    @FunctionalInterface
+    public interface BucketConsumer {
+
+        void accept(long day, int category, long amount);
+    }
+}
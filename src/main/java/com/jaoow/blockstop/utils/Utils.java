@@ -6,6 +6,22 @@ public class Utils {
 
     public static Material HEAD_MATERIAL = getSkullMaterial();
 
+    /**
+     * Format the material name for display, {@code DIAMOND_ORE} becomes {@code Diamond Ore}.
+     *
+     * @param material the material
+     * @return the formatted name
+     */
+    public static String formatMaterial(Material material) {
+        StringBuilder builder = new StringBuilder();
+        for (String word : material.name().toLowerCase().split("_")) {
+            if (word.isEmpty()) continue;
+            if (builder.length() > 0) builder.append(' ');
+            builder.append(Character.toUpperCase(word.charAt(0))).append(word.substring(1));
+        }
+        return builder.toString();
+    }
+
     private static Material getSkullMaterial() {
         Material material;
         try {
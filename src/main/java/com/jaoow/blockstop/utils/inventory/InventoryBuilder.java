@@ -9,19 +9,31 @@ import org.bukkit.entity.Player;
 import org.bukkit.event.EventHandler;
 import org.bukkit.event.Listener;
 import org.bukkit.event.inventory.InventoryClickEvent;
+import org.bukkit.event.inventory.InventoryCloseEvent;
+import org.bukkit.event.inventory.InventoryOpenEvent;
 import org.bukkit.inventory.Inventory;
 import org.bukkit.inventory.InventoryHolder;
 import org.bukkit.inventory.ItemStack;
 import org.jetbrains.annotations.NotNull;
 
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.UUID;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BooleanSupplier;
 import java.util.function.Consumer;
 import java.util.function.IntPredicate;
+import java.util.function.IntSupplier;
 
 /**
  * class to facilitate the construction of inventories.
@@ -42,6 +54,25 @@ public class InventoryBuilder<T extends InventoryBuilder.InventoryItem> {
     private final Map<ButtonType, Pair<Integer, ItemStack>> PAGES = new ConcurrentHashMap<>();
     private final List<InventoryFormat<T>> FORMATS = new CopyOnWriteArrayList<>();
 
+    // Handler of each slot, rebuilt on every format so a click is a single read.
+    private final InventoryFormat<T>[] slots;
+
+    // Items as last rendered, and the ones being rendered, only changed slots are written.
+    private ItemStack[] contents;
+    private ItemStack[] staging;
+
+    private static final AtomicLong TOTAL_WRITES = new AtomicLong();
+
+    // Inventories with at least one viewer, only touched on the main thread.
+    private static final Set<InventoryBuilder<?>> OPEN = new LinkedHashSet<>();
+
+    @Getter
+    private final Set<UUID> viewers = new HashSet<>();
+    private BooleanSupplier refresh;
+
+    @Getter
+    private int lastWrites = 0;
+
     @Getter
     private int page = 1;
     @Getter
@@ -59,35 +90,22 @@ public class InventoryBuilder<T extends InventoryBuilder.InventoryItem> {
      * @param name  the name of inventory
      * @param lines lines of inventory
      */
+    @SuppressWarnings("unchecked")
     public InventoryBuilder(String name, int lines) {
         int size = Math.min(6, Math.max(1, lines)) * 9;
         this.exit = size - 1;
         this.inventoryName = name.replace("&", "§");
+        this.slots = new InventoryFormat[size];
+        this.contents = new ItemStack[size];
+        this.staging = new ItemStack[size];
 
         this.inventory = Bukkit.createInventory(new CustomHolder(event -> {
             int slot = event.getRawSlot();
+            if (slot < 0 || slot >= slots.length) return;
 
-            for (Map.Entry<ButtonType, Pair<Integer, ItemStack>> entry : PAGES.entrySet()) {
-                if (slot == entry.getValue().getKey()) {
-
-                    ButtonType type = entry.getKey();
-                    if (type == ButtonType.BACK && this.hasPrevPage()) {
-                        this.page += type.value;
-                    } else if (type == ButtonType.NEXT && this.hasNextPage()) {
-                        this.page += type.value;
-                    }
-
-                    formatInventory();
-                    return;
-                }
-            }
-
-            for (InventoryFormat<T> format : FORMATS) {
-                if (format.isValid(event.getRawSlot())) {
-                    T value = map.get(slot);
-                    format.accept(event, value);
-                    break;
-                }
+            InventoryFormat<T> format = slots[slot];
+            if (format != null) {
+                format.accept(event, map.get(slot));
             }
 
         }), size, inventoryName.replace("{page}", String.valueOf(page)));
@@ -218,6 +236,21 @@ public class InventoryBuilder<T extends InventoryBuilder.InventoryItem> {
     }
 
 
+    /**
+     * set the items of inventory rendered a page at a time,
+     * only the items of the displayed page are created
+     *
+     * @param amount   the total amount of items
+     * @param renderer the renderer of the pages
+     * @param consumer the consumer
+     * @return the builder
+     */
+    public InventoryBuilder<T> withLazyItemStacks(IntSupplier amount, PageRenderer renderer, ClickableItem<T> consumer) {
+        this.FORMATS.add(new LazyItemInventoryFormat(amount, renderer, consumer));
+        return this;
+    }
+
+
     /**
      * set the items of inventory with parameter T
      *
@@ -264,6 +297,39 @@ public class InventoryBuilder<T extends InventoryBuilder.InventoryItem> {
         return this;
     }
 
+    /**
+     * set the check telling the inventory changed and must be formatted again,
+     * called by {@link #refresh()}
+     *
+     * @param refresh the check
+     * @return the builder
+     */
+    public InventoryBuilder<T> withRefresh(BooleanSupplier refresh) {
+        this.refresh = refresh;
+        return this;
+    }
+
+    /**
+     * Format the inventory again if its refresh check tells it changed
+     *
+     * @return if the inventory was formatted
+     */
+    public boolean refresh() {
+        if (refresh == null || !refresh.getAsBoolean()) return false;
+
+        formatInventory();
+        return true;
+    }
+
+    /**
+     * Get the inventories currently seen by a player
+     *
+     * @return a copy of the inventories
+     */
+    public static List<InventoryBuilder<?>> getOpenInventories() {
+        return new ArrayList<>(OPEN);
+    }
+
     /**
      * Check if inventory has next page
      *
@@ -301,13 +367,13 @@ public class InventoryBuilder<T extends InventoryBuilder.InventoryItem> {
      * @return the builder
      */
     public InventoryBuilder<T> formatInventory() {
-        inventory.clear();
         map.clear();
+        Arrays.fill(slots, null);
+        Arrays.fill(staging, null);
 
         FORMATS.forEach(format -> {
             if (format instanceof InventoryBuilder.MultiValueInventoryFormat) {
                 MultiValueInventoryFormat value = (MultiValueInventoryFormat) format;
-                value.map.clear();
 
                 int slot = this.start;
 
@@ -324,9 +390,9 @@ public class InventoryBuilder<T extends InventoryBuilder.InventoryItem> {
 
                     T item = items.get(index);
 
-                    inventory.setItem(slot, item.getItem());
+                    staging[slot] = item.getItem();
                     map.put(slot, item);
-                    value.map.put(slot, item.getItem());
+                    bind(slot, value);
 
                     index++;
                 }
@@ -342,11 +408,11 @@ public class InventoryBuilder<T extends InventoryBuilder.InventoryItem> {
                     map.put(singleFormat.slot, singleFormat.value);
                 }
 
-                inventory.setItem(singleFormat.slot, itemStack);
+                staging[singleFormat.slot] = itemStack;
+                bind(singleFormat.slot, singleFormat);
 
             } else if (format instanceof InventoryBuilder.MultiItemInventoryFormat) {
                 MultiItemInventoryFormat value = (MultiItemInventoryFormat) format;
-                value.map.clear();
 
                 int slot = this.start;
 
@@ -363,19 +429,73 @@ public class InventoryBuilder<T extends InventoryBuilder.InventoryItem> {
 
                     ItemStack item = items.get(index);
 
-                    inventory.setItem(slot, item);
-                    value.map.put(slot, item);
+                    staging[slot] = item;
+                    bind(slot, value);
 
                     index++;
                 }
 
                 createPages(value.items.size());
+
+            } else if (format instanceof InventoryBuilder.LazyItemInventoryFormat) {
+                LazyItemInventoryFormat value = (LazyItemInventoryFormat) format;
+
+                int amount = value.amount.getAsInt();
+                int first = size <= 0 ? 0 : Math.min((page - 1) * size, Math.max(0, amount - 1));
+                List<ItemStack> items = amount == 0
+                        ? Collections.emptyList()
+                        : value.renderer.render(first, size <= 0 ? amount : Math.min(size, amount - first));
+
+                int slot = this.start;
+                for (int index = 0; index < items.size(); slot++) {
+                    if (slot > this.exit) {
+                        break;
+                    }
+
+                    if (this.scape != null && this.scape.test(slot)) {
+                        slot += this.value - 1;
+                        continue;
+                    }
+
+                    ItemStack item = items.get(index);
+
+                    staging[slot] = item;
+                    bind(slot, value);
+
+                    index++;
+                }
+
+                createPages(amount);
             }
         });
 
+        // Each write is sent to every viewer, unchanged slots are left alone.
+        int writes = 0;
+        for (int slot = 0; slot < staging.length; slot++) {
+            if (Objects.equals(contents[slot], staging[slot])) continue;
+
+            inventory.setItem(slot, staging[slot]);
+            writes++;
+        }
+
+        ItemStack[] rendered = staging;
+        staging = contents;
+        contents = rendered;
+
+        lastWrites = writes;
+        TOTAL_WRITES.addAndGet(writes);
         return this;
     }
 
+    /**
+     * Get the amount of slots written by every inventory since startup
+     *
+     * @return the amount of slots
+     */
+    public static long getTotalWrites() {
+        return TOTAL_WRITES.get();
+    }
+
     /**
      * Create a pages of inventory
      *
@@ -385,14 +505,32 @@ public class InventoryBuilder<T extends InventoryBuilder.InventoryItem> {
 
         maxPage = Math.max((int) Math.ceil((double) size / this.size), 1);
 
+        // Page buttons take their slots over from any other item.
+        for (Map.Entry<ButtonType, Pair<Integer, ItemStack>> entry : PAGES.entrySet()) {
+            int slot = entry.getValue().getKey();
+            if (slot >= 0 && slot < slots.length) slots[slot] = new PageButtonFormat(entry.getKey());
+        }
+
         if (PAGES.containsKey(ButtonType.BACK)) {
             Pair<Integer, ItemStack> pair = PAGES.get(ButtonType.BACK);
-            inventory.setItem(pair.getKey(), pair.getValue());
+            staging[pair.getKey()] = pair.getValue();
         }
 
         if (PAGES.containsKey(ButtonType.NEXT) && this.hasNextPage()) {
             Pair<Integer, ItemStack> pair = PAGES.get(ButtonType.NEXT);
-            inventory.setItem(pair.getKey(), pair.getValue());
+            staging[pair.getKey()] = pair.getValue();
+        }
+    }
+
+    /**
+     * Bind the slot to the format, the first format placed in a slot handles it
+     *
+     * @param slot   the slot
+     * @param format the format
+     */
+    private void bind(int slot, InventoryFormat<T> format) {
+        if (slot >= 0 && slot < slots.length && slots[slot] == null) {
+            slots[slot] = format;
         }
     }
 
@@ -426,8 +564,6 @@ public class InventoryBuilder<T extends InventoryBuilder.InventoryItem> {
      */
     private interface InventoryFormat<T> {
 
-        boolean isValid(int slot);
-
         void accept(InventoryClickEvent event, T value);
     }
 
@@ -442,6 +578,22 @@ public class InventoryBuilder<T extends InventoryBuilder.InventoryItem> {
     }
 
 
+    /**
+     * Class called to create the items of the displayed page
+     */
+    @FunctionalInterface
+    public interface PageRenderer {
+
+        /**
+         * @param first  the index of the first item
+         * @param amount the amount of items
+         * @return the items
+         */
+        List<ItemStack> render(int first, int amount);
+
+    }
+
+
     private static class ListUtils {
 
         /**
@@ -509,6 +661,10 @@ public class InventoryBuilder<T extends InventoryBuilder.InventoryItem> {
             return consumer;
         }
 
+        public InventoryBuilder<T> getBuilder() {
+            return InventoryBuilder.this;
+        }
+
         @Override
         public @NotNull Inventory getInventory() {
             return InventoryBuilder.this.getInventory();
@@ -522,18 +678,12 @@ public class InventoryBuilder<T extends InventoryBuilder.InventoryItem> {
 
         private final List<T> items;
         private final ClickableItem<T> consumer;
-        private final Map<Integer, ItemStack> map = new HashMap<>();
 
         public MultiValueInventoryFormat(List<T> items, ClickableItem<T> consumer) {
             this.items = items;
             this.consumer = consumer;
         }
 
-        @Override
-        public boolean isValid(int value) {
-            return map.containsKey(value);
-        }
-
         public void accept(InventoryClickEvent event, T value) {
             if (this.consumer == null) return;
             consumer.accept(event, value);
@@ -547,23 +697,58 @@ public class InventoryBuilder<T extends InventoryBuilder.InventoryItem> {
 
         private final List<ItemStack> items;
         private final ClickableItem<T> consumer;
-        private final Map<Integer, ItemStack> map = new HashMap<>();
 
         public MultiItemInventoryFormat(List<ItemStack> items, ClickableItem<T> consumer) {
             this.items = items;
             this.consumer = consumer;
         }
 
-        @Override
-        public boolean isValid(int value) {
-            return map.containsKey(value);
+        public void accept(InventoryClickEvent event, T value) {
+            consumer.accept(event, value);
+        }
+    }
+
+    /**
+     * Private class to format the inventory with items rendered per page
+     */
+    private class LazyItemInventoryFormat implements InventoryFormat<T> {
+
+        private final IntSupplier amount;
+        private final PageRenderer renderer;
+        private final ClickableItem<T> consumer;
+
+        public LazyItemInventoryFormat(IntSupplier amount, PageRenderer renderer, ClickableItem<T> consumer) {
+            this.amount = amount;
+            this.renderer = renderer;
+            this.consumer = consumer;
         }
 
         public void accept(InventoryClickEvent event, T value) {
+            if (this.consumer == null) return;
             consumer.accept(event, value);
         }
     }
 
+    /**
+     * Private class to handle the clicks in the page buttons
+     */
+    @AllArgsConstructor
+    private class PageButtonFormat implements InventoryFormat<T> {
+
+        private final ButtonType type;
+
+        @Override
+        public void accept(InventoryClickEvent event, T value) {
+            if (type == ButtonType.BACK && hasPrevPage()) {
+                page += type.value;
+            } else if (type == ButtonType.NEXT && hasNextPage()) {
+                page += type.value;
+            }
+
+            formatInventory();
+        }
+    }
+
     /**
      * Private class to format the inventory with just one item
      */
@@ -575,11 +760,6 @@ public class InventoryBuilder<T extends InventoryBuilder.InventoryItem> {
         private final ItemStack itemStack;
         private final ClickableItem<T> consumer;
 
-        @Override
-        public boolean isValid(int value) {
-            return slot == value;
-        }
-
         @Override
         public void accept(InventoryClickEvent event, T value) {
             if (this.consumer == null) return;
@@ -599,5 +779,23 @@ public class InventoryBuilder<T extends InventoryBuilder.InventoryItem> {
                 holder.getConsumer().accept(event);
             }
         }
+
+        @EventHandler
+        public void onOpen(InventoryOpenEvent event) {
+            if (!(event.getInventory().getHolder() instanceof InventoryBuilder.CustomHolder)) return;
+
+            InventoryBuilder<?> builder = ((InventoryBuilder<?>.CustomHolder) event.getInventory().getHolder()).getBuilder();
+            builder.viewers.add(event.getPlayer().getUniqueId());
+            OPEN.add(builder);
+        }
+
+        @EventHandler
+        public void onClose(InventoryCloseEvent event) {
+            if (!(event.getInventory().getHolder() instanceof InventoryBuilder.CustomHolder)) return;
+
+            InventoryBuilder<?> builder = ((InventoryBuilder<?>.CustomHolder) event.getInventory().getHolder()).getBuilder();
+            builder.viewers.remove(event.getPlayer().getUniqueId());
+            if (builder.viewers.isEmpty()) OPEN.remove(builder);
+        }
     }
 }
\ No newline at end of file
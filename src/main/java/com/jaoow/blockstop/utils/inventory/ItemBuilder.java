@@ -14,7 +14,9 @@ import org.jetbrains.annotations.Nullable;
 
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.UUID;
 
 /**
@@ -24,6 +26,21 @@ import java.util.UUID;
 @SuppressWarnings({"UnusedReturnValue", "unused"})
 public class ItemBuilder implements Cloneable {
 
+    // Materials renamed by the flattening, by their names on both sides.
+    private static final Map<String, String> RENAMED_MATERIALS = new HashMap<>();
+
+    static {
+        renamed("CLOCK", "WATCH");
+        renamed("PLAYER_HEAD", "SKULL_ITEM");
+        renamed("OAK_SIGN", "SIGN");
+        renamed("ENDER_EYE", "EYE_OF_ENDER");
+        renamed("EXPERIENCE_BOTTLE", "EXP_BOTTLE");
+        renamed("WRITABLE_BOOK", "BOOK_AND_QUILL");
+        renamed("FIREWORK_ROCKET", "FIREWORK");
+        renamed("GOLDEN_PICKAXE", "GOLD_PICKAXE");
+        renamed("WOODEN_PICKAXE", "WOOD_PICKAXE");
+    }
+
     private final ItemStack item; // Final item.
 
     /**
@@ -127,17 +144,34 @@ public class ItemBuilder implements Cloneable {
             if (section.contains("lore")) {
                 builder.withLore(section.getStringList("lore"));
             }
-        } catch (NullPointerException | NumberFormatException | IndexOutOfBoundsException ex) {
+        } catch (IllegalArgumentException | NullPointerException | IndexOutOfBoundsException ex) {
             return new ItemBuilder(Material.BARRIER).withName("&cInvalid Item").addLore("&7Where: " + section.getCurrentPath());
         }
 
         return builder;
     }
 
+    /**
+     * Get the material by its name, also accepting the name it has on
+     * the other side of the flattening so configs work on every version.
+     *
+     * @param type the name of the material
+     * @return the material, or null if unknown
+     */
     @Nullable
     public static Material getMaterial(String type) {
         if (type == null || type.isEmpty()) return null;
-        return Material.matchMaterial(type.toUpperCase());
+
+        Material material = Material.matchMaterial(type.toUpperCase());
+        if (material != null) return material;
+
+        String renamed = RENAMED_MATERIALS.get(type.toUpperCase());
+        return renamed == null ? null : Material.matchMaterial(renamed);
+    }
+
+    private static void renamed(String modern, String legacy) {
+        RENAMED_MATERIALS.put(modern, legacy);
+        RENAMED_MATERIALS.put(legacy, modern);
     }
 
     private static String applyPlaceholder(String text, String[] placeholders, String[] replacers) {
@@ -174,6 +208,17 @@ public class ItemBuilder implements Cloneable {
         return meta.getLore();
     }
 
+    /**
+     * Replace the item meta, such as a skull resolved beforehand.
+     *
+     * @param meta the meta.
+     * @return {@link ItemBuilder}
+     */
+    public ItemBuilder withMeta(ItemMeta meta) {
+        item.setItemMeta(meta);
+        return this;
+    }
+
     public ItemBuilder setOwner(UUID owner) {
         return setOwner(Bukkit.getOfflinePlayer(owner).getName());
     }
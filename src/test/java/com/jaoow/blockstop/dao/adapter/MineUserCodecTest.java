@@ -0,0 +1,82 @@
+package com.jaoow.blockstop.dao.adapter;
+
+import com.jaoow.blockstop.dao.MaterialIdTable;
+import com.jaoow.blockstop.model.MaterialCounter;
+import org.bukkit.Material;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class MineUserCodecTest {
+
+    private MaterialIdTable idTable;
+    private MineUserCodec codec;
+
+    @BeforeEach
+    void setUp() {
+        // Ids past 127 take more than one varint byte.
+        Material[] materials = Material.values();
+        idTable = mock(MaterialIdTable.class);
+        when(idTable.idOf(any(Material.class))).thenAnswer(invocation -> ((Material) invocation.getArgument(0)).ordinal() + 200);
+        when(idTable.materialOf(anyInt())).thenAnswer(invocation -> {
+            int id = invocation.getArgument(0);
+            return id >= 200 && id - 200 < materials.length ? materials[id - 200] : null;
+        });
+        codec = new MineUserCodec(idTable);
+    }
+
+    @Test
+    void roundTripKeepsEveryAmount() {
+        MaterialCounter materials = new MaterialCounter();
+        materials.add(Material.STONE, 1);
+        materials.add(Material.DIRT, 127);
+        materials.add(Material.GRAVEL, 128);
+        materials.add(Material.DIAMOND_ORE, 300_000);
+        materials.add(Material.GOLD_ORE, Long.MAX_VALUE);
+
+        byte[] payload = codec.encode(materials);
+        assertTrue(MineUserCodec.isBinary(payload));
+
+        MaterialCounter decoded = codec.decode(payload);
+        assertEquals(materials.size(), decoded.size());
+        materials.forEach((material, amount) -> assertEquals(amount, decoded.get(material)));
+    }
+
+    @Test
+    void emptyCounterRoundTrips() {
+        byte[] payload = codec.encode(new MaterialCounter());
+
+        assertEquals(3, payload.length);
+        assertTrue(codec.decode(payload).isEmpty());
+    }
+
+    @Test
+    void unknownIdsAreSkipped() {
+        MaterialCounter materials = new MaterialCounter();
+        materials.add(Material.STONE, 10);
+        materials.add(Material.DIRT, 20);
+        byte[] payload = codec.encode(materials);
+
+        // Another server version registered DIRT, unknown here.
+        when(idTable.materialOf(Material.DIRT.ordinal() + 200)).thenReturn(null);
+
+        MaterialCounter decoded = codec.decode(payload);
+        assertEquals(1, decoded.size());
+        assertEquals(10, decoded.get(Material.STONE));
+    }
+
+    @Test
+    void rejectsMalformedPayloads() {
+        assertFalse(MineUserCodec.isBinary("{\"unique_id\":1}".getBytes()));
+        assertThrows(IllegalArgumentException.class, () -> codec.decode(new byte[]{(byte) MineUserCodec.MAGIC, 9, 0}));
+        assertThrows(IllegalArgumentException.class, () -> codec.decode(new byte[]{(byte) MineUserCodec.MAGIC, MineUserCodec.VERSION, (byte) 0x81}));
+    }
+}
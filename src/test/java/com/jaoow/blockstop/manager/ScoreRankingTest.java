@@ -0,0 +1,94 @@
+package com.jaoow.blockstop.manager;
+
+import com.jaoow.blockstop.utils.Pair;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ScoreRankingTest {
+
+    @Test
+    void rangeIsOrderedByScoreThenUuid() {
+        ScoreRanking ranking = new ScoreRanking();
+        List<Pair<UUID, Long>> expected = new ArrayList<>();
+
+        for (int i = 0; i < 500; i++) {
+            UUID uuid = UUID.randomUUID();
+            long score = i % 50;
+            ranking.insert(uuid, score);
+            expected.add(Pair.of(uuid, score));
+        }
+        expected.sort(Comparator.comparingLong((Pair<UUID, Long> entry) -> -entry.getValue())
+                .thenComparing(Pair::getKey));
+
+        assertEquals(expected.size(), ranking.size());
+        assertSameEntries(expected.subList(0, 10), ranking.top(10));
+        assertSameEntries(expected.subList(137, 158), ranking.range(137, 21));
+        assertSameEntries(expected.subList(490, 500), ranking.range(490, 21));
+        assertTrue(ranking.range(500, 21).isEmpty());
+    }
+
+    @Test
+    void rankMatchesPositionInRange() {
+        ScoreRanking ranking = new ScoreRanking();
+        for (int i = 0; i < 200; i++) {
+            ranking.insert(UUID.randomUUID(), i * 7 % 31);
+        }
+
+        List<Pair<UUID, Long>> all = ranking.range(0, ranking.size());
+        for (int position = 0; position < all.size(); position++) {
+            Pair<UUID, Long> entry = all.get(position);
+            assertEquals(position + 1, ranking.rank(entry.getKey(), entry.getValue()));
+        }
+
+        assertEquals(-1, ranking.rank(UUID.randomUUID(), 3));
+    }
+
+    @Test
+    void removeMovesTheOthersUp() {
+        ScoreRanking ranking = new ScoreRanking();
+        UUID first = UUID.randomUUID();
+        UUID second = UUID.randomUUID();
+        UUID third = UUID.randomUUID();
+
+        ranking.insert(first, 30);
+        ranking.insert(second, 20);
+        ranking.insert(third, 10);
+        ranking.remove(first, 30);
+
+        assertEquals(2, ranking.size());
+        assertEquals(-1, ranking.rank(first, 30));
+        assertEquals(1, ranking.rank(second, 20));
+        assertEquals(2, ranking.rank(third, 10));
+    }
+
+    @Test
+    void everyUpdateChangesTheVersion() {
+        ScoreRanking ranking = new ScoreRanking();
+        UUID uuid = UUID.randomUUID();
+
+        long created = ranking.getVersion();
+        ranking.insert(uuid, 5);
+        long inserted = ranking.getVersion();
+        ranking.remove(uuid, 5);
+
+        assertNotEquals(created, inserted);
+        assertNotEquals(inserted, ranking.getVersion());
+        assertNotEquals(created, new ScoreRanking().getVersion());
+    }
+
+    private static void assertSameEntries(List<Pair<UUID, Long>> expected, List<Pair<UUID, Long>> actual) {
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertEquals(expected.get(i).getKey(), actual.get(i).getKey());
+            assertEquals(expected.get(i).getValue(), actual.get(i).getValue());
+        }
+    }
+}
@@ -0,0 +1,104 @@
+package com.jaoow.blockstop.manager;
+
+import com.jaoow.blockstop.model.SkullTextures;
+import org.bukkit.inventory.meta.SkullMeta;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Logger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class SkullCacheTest {
+
+    private static final Logger LOGGER = Logger.getLogger(SkullCacheTest.class.getName());
+
+    @Test
+    void resolvesInBackgroundThenServesCopies() {
+        List<Runnable> tasks = new ArrayList<>();
+        StubSource source = new StubSource(new StubTextureLookup("textures"));
+        SkullCache cache = new SkullCache(tasks::add, LOGGER, source, 10);
+        UUID uuid = UUID.randomUUID();
+
+        assertNull(cache.get(uuid, "Jaoow"));
+        assertNull(cache.get(uuid, "Jaoow"));
+        assertEquals(1, tasks.size());
+
+        tasks.forEach(Runnable::run);
+        assertNotNull(cache.get(uuid, "Jaoow"));
+        assertEquals(1, source.resolved.get());
+        assertEquals("textures", source.lastTextures.getValue());
+    }
+
+    @Test
+    void failedProfilesAreNotRetriedRightAway() {
+        StubSource source = new StubSource(uuid -> null);
+        SkullCache cache = new SkullCache(Runnable::run, LOGGER, source, 10);
+        UUID uuid = UUID.randomUUID();
+
+        assertNull(cache.get(uuid, "Jaoow"));
+        assertNull(cache.get(uuid, "Jaoow"));
+        assertEquals(1, source.resolved.get());
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    void dropsTheLeastRecentlyUsedPastCapacity() {
+        StubSource source = new StubSource(new StubTextureLookup("textures"));
+        SkullCache cache = new SkullCache(Runnable::run, LOGGER, source, 2);
+        UUID first = UUID.randomUUID();
+        UUID second = UUID.randomUUID();
+        UUID third = UUID.randomUUID();
+
+        cache.request(first, "first");
+        cache.request(second, "second");
+        assertNotNull(cache.get(first, "first"));
+        cache.request(third, "third");
+
+        assertEquals(2, cache.size());
+        assertEquals(3, source.resolved.get());
+
+        // The second one was dropped, asking for it resolves it again.
+        assertNull(cache.get(second, "second"));
+        assertEquals(4, source.resolved.get());
+    }
+
+    /**
+     * Profile source building the skulls from a texture lookup, without a server.
+     */
+    private static final class StubSource implements ProfileSource {
+
+        private final TextureLookup lookup;
+        private final AtomicInteger resolved = new AtomicInteger();
+        private SkullTextures lastTextures;
+
+        private StubSource(TextureLookup lookup) {
+            this.lookup = lookup;
+        }
+
+        @Override
+        public SkullMeta resolve(UUID uuid, String name) {
+            resolved.incrementAndGet();
+
+            SkullTextures textures;
+            try {
+                textures = lookup.lookup(uuid);
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+            if (textures == null) return null;
+            lastTextures = textures;
+
+            SkullMeta meta = mock(SkullMeta.class);
+            when(meta.clone()).thenReturn(meta);
+            return meta;
+        }
+    }
+}
@@ -0,0 +1,102 @@
+package com.jaoow.blockstop.manager;
+
+import com.jaoow.blockstop.utils.Pair;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SpaceSavingTest {
+
+    @Test
+    void exactWhileBelowCapacity() {
+        SpaceSaving summary = new SpaceSaving(10);
+        UUID first = UUID.randomUUID();
+        UUID second = UUID.randomUUID();
+
+        summary.offer(first, 5);
+        summary.offer(second, 8);
+        summary.offer(first, 4);
+
+        List<Pair<UUID, Long>> top = summary.top(10);
+        assertEquals(2, top.size());
+        assertEquals(first, top.get(0).getKey());
+        assertEquals(9L, top.get(0).getValue());
+        assertEquals(0, summary.getErrorBound());
+        assertEquals(2, summary.rank(second));
+    }
+
+    @Test
+    void estimatesStayWithinTheirErrorBound() {
+        int capacity = 20;
+        SpaceSaving summary = new SpaceSaving(capacity);
+        Map<UUID, Long> real = new HashMap<>();
+
+        List<UUID> users = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            users.add(UUID.randomUUID());
+        }
+
+        // Skewed stream, the first users break most of the blocks.
+        Random random = new Random(42);
+        long offered = 0;
+        for (int i = 0; i < 20_000; i++) {
+            UUID uuid = users.get((int) (users.size() * Math.pow(random.nextDouble(), 3)));
+            long amount = 1 + random.nextInt(3);
+
+            summary.offer(uuid, amount);
+            real.merge(uuid, amount, Long::sum);
+            offered += amount;
+        }
+
+        assertEquals(capacity, summary.size());
+        assertTrue(summary.getErrorBound() <= offered / capacity);
+
+        long smallest = Long.MAX_VALUE;
+        for (Pair<UUID, Long> entry : summary.top(capacity)) {
+            UUID uuid = entry.getKey();
+            long estimate = entry.getValue();
+            long count = real.get(uuid);
+
+            assertEquals(estimate, summary.estimate(uuid));
+            assertTrue(estimate >= count);
+            assertTrue(estimate - count <= summary.error(uuid));
+            assertTrue(summary.error(uuid) <= summary.getErrorBound());
+            smallest = Math.min(smallest, estimate);
+        }
+
+        // Every user above the smallest counter is monitored.
+        for (Map.Entry<UUID, Long> entry : real.entrySet()) {
+            if (entry.getValue() > smallest) assertTrue(summary.rank(entry.getKey()) > 0);
+        }
+    }
+
+    @Test
+    void seededCountsHaveNoError() {
+        SpaceSaving summary = new SpaceSaving(2);
+        UUID first = UUID.randomUUID();
+        UUID second = UUID.randomUUID();
+        UUID third = UUID.randomUUID();
+
+        summary.seed(first, 100);
+        summary.seed(second, 50);
+        summary.seed(third, 10);
+
+        assertEquals(2, summary.size());
+        assertEquals(0, summary.getErrorBound());
+        assertEquals(-1, summary.rank(third));
+
+        // The newcomer takes the smallest counter over, inheriting its count as error.
+        summary.offer(third, 1);
+        assertEquals(51, summary.estimate(third));
+        assertEquals(50, summary.error(third));
+        assertEquals(0, summary.estimate(second));
+    }
+}
@@ -0,0 +1,54 @@
+package com.jaoow.blockstop.model;
+
+import org.bukkit.Material;
+import org.junit.jupiter.api.Test;
+
+import java.util.EnumMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class MaterialCounterTest {
+
+    @Test
+    void countsLikeAMapWhileGrowing() {
+        MaterialCounter counter = new MaterialCounter();
+        Map<Material, Long> expected = new EnumMap<>(Material.class);
+
+        Material[] materials = Material.values();
+        for (int i = 0; i < 2_000; i++) {
+            Material material = materials[i * 31 % materials.length];
+            long amount = i % 7 + 1;
+
+            counter.add(material, amount);
+            expected.merge(material, amount, Long::sum);
+        }
+
+        assertEquals(expected.size(), counter.size());
+        assertEquals(expected.values().stream().mapToLong(Long::longValue).sum(), counter.total());
+        expected.forEach((material, amount) -> assertEquals(amount.longValue(), counter.get(material)));
+
+        Map<Material, Long> visited = new EnumMap<>(Material.class);
+        counter.forEach(visited::put);
+        assertEquals(expected, visited);
+    }
+
+    @Test
+    void copiesAreIndependent() {
+        MaterialCounter counter = new MaterialCounter();
+        counter.increment(Material.STONE);
+
+        MaterialCounter copy = counter.copy();
+        copy.increment(Material.STONE);
+        copy.increment(Material.DIRT);
+
+        assertEquals(1, counter.get(Material.STONE));
+        assertEquals(0, counter.get(Material.DIRT));
+        assertEquals(2, copy.get(Material.STONE));
+
+        counter.clear();
+        assertTrue(counter.isEmpty());
+        assertEquals(0, counter.get(Material.STONE));
+    }
+}
@@ -0,0 +1,58 @@
+package com.jaoow.blockstop.model;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class WindowCounterTest {
+
+    private static final long TODAY = 19_000;
+
+    @Test
+    void sumsOnlyTheDaysOfTheWindow() {
+        WindowCounter counter = new WindowCounter(2);
+        counter.add(TODAY, 0, 1);
+        counter.add(TODAY - 6, 0, 10);
+        counter.add(TODAY - 7, 0, 100);
+        counter.add(TODAY - 29, 0, 1_000);
+        counter.add(TODAY, 1, 5);
+
+        assertEquals(1, counter.sum(TODAY, 0, TimeWindow.DAILY));
+        assertEquals(11, counter.sum(TODAY, 0, TimeWindow.WEEKLY));
+        assertEquals(1_111, counter.sum(TODAY, 0, TimeWindow.MONTHLY));
+        assertEquals(5, counter.sum(TODAY, 1, TimeWindow.MONTHLY));
+
+        // A day later the oldest buckets leave their windows.
+        assertEquals(0, counter.sum(TODAY + 1, 0, TimeWindow.DAILY));
+        assertEquals(1, counter.sum(TODAY + 1, 0, TimeWindow.WEEKLY));
+        assertEquals(111, counter.sum(TODAY + 1, 0, TimeWindow.MONTHLY));
+    }
+
+    @Test
+    void reusedSlotsForgetTheirOldDay() {
+        WindowCounter counter = new WindowCounter(1);
+        counter.add(TODAY - WindowCounter.BUCKETS, 0, 50);
+        counter.add(TODAY, 0, 3);
+
+        assertEquals(3, counter.sum(TODAY, 0, TimeWindow.MONTHLY));
+
+        List<Long> days = new ArrayList<>();
+        counter.forEach(TODAY, (day, category, amount) -> days.add(day));
+        assertEquals(1, days.size());
+        assertEquals(TODAY, days.get(0).longValue());
+    }
+
+    @Test
+    void expiresOnceEveryBucketLeftTheRing() {
+        WindowCounter counter = new WindowCounter(1);
+        counter.add(TODAY, 0, 1);
+
+        assertFalse(counter.isExpired(TODAY + WindowCounter.BUCKETS - 1));
+        assertTrue(counter.isExpired(TODAY + WindowCounter.BUCKETS));
+    }
+}